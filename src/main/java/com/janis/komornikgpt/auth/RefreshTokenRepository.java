@@ -1,6 +1,7 @@
 package com.janis.komornikgpt.auth;
 
 import com.janis.komornikgpt.user.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.stereotype.Repository;
@@ -10,6 +11,7 @@ import java.util.Optional;
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
+    @EntityGraph(attributePaths = "user")
     Optional<RefreshToken> findByToken(String token);
 
 
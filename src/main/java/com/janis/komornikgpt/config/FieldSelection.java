@@ -0,0 +1,68 @@
+package com.janis.komornikgpt.config;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Top-level fields of a resource requested with the {@code fields} query parameter, e.g.
+ * {@code fields=description,amount,date,payer}. Services use it to skip associations that are not requested,
+ * {@link SparseFieldsetAdvice} to leave them out of the JSON.
+ *
+ * @param fields requested field names, {@code null} when all fields are requested
+ */
+public record FieldSelection(Set<String> fields) {
+
+    public static final String PARAMETER = "fields";
+    public static final FieldSelection ALL = new FieldSelection(null);
+
+    /**
+     * @return the selection from a comma-separated list, {@link #ALL} for a missing or blank parameter
+     */
+    public static FieldSelection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        return new FieldSelection(Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+    }
+
+    /**
+     * @throws IllegalArgumentException when a field is not one of {@code allowed}
+     */
+    public static FieldSelection parse(String fields, Set<String> allowed) {
+        FieldSelection selection = parse(fields);
+        if (selection.fields != null) {
+            for (String field : selection.fields) {
+                if (!allowed.contains(field)) {
+                    throw new IllegalArgumentException("Nieznane pole w parametrze fields: " + field
+                            + " (dozwolone: " + String.join(", ", allowed) + ")");
+                }
+            }
+        }
+        return selection;
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /**
+     * @return this selection extended with {@code field}, used when the response needs an association itself
+     */
+    public FieldSelection including(String field) {
+        if (includes(field)) {
+            return this;
+        }
+        Set<String> extended = new LinkedHashSet<>(fields);
+        extended.add(field);
+        return new FieldSelection(extended);
+    }
+}
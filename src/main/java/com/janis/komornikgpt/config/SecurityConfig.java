@@ -1,6 +1,7 @@
 package com.janis.komornikgpt.config;
 
 import com.janis.komornikgpt.auth.*;
+import com.janis.komornikgpt.user.Role;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -113,6 +114,8 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, PUBLIC_API_GET).permitAll()
                         .requestMatchers(HttpMethod.POST, PUBLIC_API_POST).permitAll()
                         .requestMatchers("/actuator/health", "/actuator/info").permitAll()
+                        .requestMatchers("/actuator/groupbalances", "/actuator/groupbalances/**").hasAuthority(Role.ADMIN.name())
+                        .requestMatchers("/actuator/exchangerates", "/actuator/exchangerates/**").hasAuthority(Role.ADMIN.name())
                         .requestMatchers(expensesWithViewTokenMatcher()).permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/expenses/group/*").authenticated()
                         .anyRequest().authenticated())
@@ -147,7 +150,7 @@ public class SecurityConfig {
             String viewToken = request.getParameter("viewToken");
 
             return "GET".equals(method) &&
-                    uri.matches("/api/expenses/group/\\d+") &&
+                    uri.matches("/api/expenses/group/\\d+(/export)?") &&
                     viewToken != null &&
                     !viewToken.trim().isEmpty();
         };
@@ -163,6 +166,7 @@ public class SecurityConfig {
 
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(List.of("*"));
+        configuration.setExposedHeaders(List.of("X-Settlement-Strategy", "X-Next-Cursor", "ETag"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,20 @@
+package com.janis.komornikgpt.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler whose response honours the {@code fields} query parameter: properties of DTOs annotated with
+ * {@code @JsonFilter(filter)} that were not requested are left out of the JSON.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SparseFieldset {
+
+    /**
+     * Jackson filter id of the resource the {@code fields} parameter applies to.
+     */
+    String filter();
+}
@@ -0,0 +1,64 @@
+package com.janis.komornikgpt.config;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import tools.jackson.databind.ser.FilterProvider;
+import tools.jackson.databind.ser.std.SimpleBeanPropertyFilter;
+import tools.jackson.databind.ser.std.SimpleFilterProvider;
+
+import java.util.Map;
+
+/**
+ * Passes the {@code fields} query parameter of {@link SparseFieldset} handlers to Jackson as a filter, so the
+ * unrequested properties are skipped while writing instead of being removed from a serialized tree.
+ */
+@ControllerAdvice
+public class SparseFieldsetAdvice implements ResponseBodyAdvice<Object> {
+
+    /**
+     * Filters used when no fields are selected; configured on the application's JsonMapper.
+     */
+    public static final FilterProvider SERIALIZE_ALL = new SimpleFilterProvider()
+            .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll());
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.hasMethodAnnotation(SparseFieldset.class);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        return body;
+    }
+
+    @Override
+    public Map<String, Object> determineWriteHints(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                                   Class<? extends HttpMessageConverter<?>> selectedConverterType) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return null;
+        }
+        FieldSelection fields = FieldSelection.parse(servletAttributes.getRequest().getParameter(FieldSelection.PARAMETER));
+        if (fields.isAll()) {
+            return null;
+        }
+        SparseFieldset sparseFieldset = returnType.getMethodAnnotation(SparseFieldset.class);
+        return Map.of(FilterProvider.class.getName(), filters(sparseFieldset.filter(), fields));
+    }
+
+    public static FilterProvider filters(String filterId, FieldSelection fields) {
+        return new SimpleFilterProvider()
+                .setDefaultFilter(SimpleBeanPropertyFilter.serializeAll())
+                .addFilter(filterId, SimpleBeanPropertyFilter.filterOutAllExcept(fields.fields()));
+    }
+}
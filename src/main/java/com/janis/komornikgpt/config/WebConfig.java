@@ -1,5 +1,6 @@
 package com.janis.komornikgpt.config;
 
+import org.springframework.boot.jackson.autoconfigure.JsonMapperBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestClient;
@@ -13,4 +14,10 @@ public class WebConfig implements WebMvcConfigurer {
 		return builder.build();
 	}
 
+	// DTOs with @JsonFilter are written whole unless a handler passes its own filters
+	@Bean
+	public JsonMapperBuilderCustomizer sparseFieldsetFilters() {
+		return builder -> builder.filterProvider(SparseFieldsetAdvice.SERIALIZE_ALL);
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.janis.komornikgpt.exception;
+
+public class ExchangeRateUnavailableException extends RuntimeException {
+    public ExchangeRateUnavailableException(String message) {
+        super(message);
+    }
+
+    public ExchangeRateUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,6 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+
+public record BalanceDrift(Long userId, Currency currency, BigDecimal ledger, BigDecimal actual) {
+}
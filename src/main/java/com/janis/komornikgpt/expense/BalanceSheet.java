@@ -0,0 +1,92 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.user.User;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Balances of group members in one currency. Members are mapped by id to dense indexes and balances are kept in
+ * minor units of the currency, so the settlement strategies work on a plain {@code long[]}.
+ */
+public class BalanceSheet {
+
+    private final Currency currency;
+    private final Map<Long, Integer> indexById = new HashMap<>();
+    private User[] members = new User[8];
+    private long[] balances = new long[8];
+    private int size;
+
+    public BalanceSheet(Currency currency) {
+        this.currency = currency;
+    }
+
+    public Currency currency() {
+        return currency;
+    }
+
+    public void add(User user, BigDecimal amount) {
+        add(user, currency.toMinorUnits(amount));
+    }
+
+    public void add(User user, long minorUnits) {
+        int index = indexOf(user);
+        balances[index] += minorUnits;
+    }
+
+    private int indexOf(User user) {
+        Integer index = indexById.get(user.getId());
+        if (index != null) {
+            return index;
+        }
+        if (size == members.length) {
+            members = Arrays.copyOf(members, size * 2);
+            balances = Arrays.copyOf(balances, size * 2);
+        }
+        members[size] = user;
+        indexById.put(user.getId(), size);
+        return size++;
+    }
+
+    /**
+     * Adds the balances of this sheet, converted with the factor of a {@link CrossRateMatrix}, to the target sheet.
+     * Rounding leftovers are assigned to the member with the largest converted balance, so the converted balances
+     * still sum to zero.
+     */
+    public void convertInto(BalanceSheet target, CrossRateMatrix crossRates) {
+        double factor = crossRates.factor(currency, target.currency);
+        long[] converted = new long[size];
+        long total = 0;
+        int largest = -1;
+        for (int i = 0; i < size; i++) {
+            converted[i] = Math.round(balances[i] * factor);
+            total += converted[i];
+            if (largest < 0 || Math.abs(converted[i]) > Math.abs(converted[largest])) {
+                largest = i;
+            }
+        }
+        if (largest >= 0) {
+            converted[largest] -= total;
+        }
+        for (int i = 0; i < size; i++) {
+            target.add(members[i], converted[i]);
+        }
+    }
+
+    public long[] balances() {
+        return Arrays.copyOf(balances, size);
+    }
+
+    public SettlementResult toSettlements(TransferPlan plan) {
+        List<Settlement> settlements = new ArrayList<>(plan.size());
+        for (int i = 0; i < plan.size(); i++) {
+            settlements.add(new Settlement(members[plan.from(i)], members[plan.to(i)],
+                    currency.fromMinorUnits(plan.amount(i)), currency));
+        }
+        return new SettlementResult(settlements, plan.algorithm());
+    }
+}
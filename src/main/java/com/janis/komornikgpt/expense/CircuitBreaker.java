@@ -0,0 +1,49 @@
+package com.janis.komornikgpt.expense;
+
+/**
+ * Opens after {@code failureThreshold} consecutive failures and rejects calls for {@code openNanos}. Then a single
+ * trial call is let through: its success closes the breaker, its failure opens it again.
+ */
+final class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private int consecutiveFailures;
+    private boolean open;
+    private boolean trialInFlight;
+    private long openedAt;
+
+    CircuitBreaker(int failureThreshold, long openNanos) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+    }
+
+    synchronized boolean tryAcquire(long nowNanos) {
+        if (!open) {
+            return true;
+        }
+        if (!trialInFlight && nowNanos - openedAt >= openNanos) {
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        open = false;
+        trialInFlight = false;
+    }
+
+    synchronized void onFailure(long nowNanos) {
+        trialInFlight = false;
+        if (open || ++consecutiveFailures >= failureThreshold) {
+            open = true;
+            openedAt = nowNanos;
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return open;
+    }
+}
@@ -0,0 +1,89 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.group.GroupDto;
+import com.janis.komornikgpt.user.UserDto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Normalized expense list: expenses reference their payer, split users and group by id, and every user and group
+ * appears once in the {@code users} and {@code groups} dictionaries.
+ */
+public record CompactExpensesDto(
+        List<CompactExpenseDto> expenses,
+        Map<Long, UserDto> users,
+        Map<Long, CompactGroupDto> groups
+) {
+
+    public record CompactExpenseDto(
+            Long id,
+            String description,
+            BigDecimal amount,
+            Currency currency,
+            LocalDateTime date,
+            Long payerId,
+            Long groupId,
+            List<CompactSplitDto> splits,
+            LocalDateTime createdAt,
+            LocalDateTime updatedAt,
+            Boolean isPaid,
+            ExpenseCategory category
+    ) {
+        public static CompactExpenseDto fromRow(ExpenseRow row, List<ExpenseSplitRow> splits) {
+            return new CompactExpenseDto(
+                    row.id(),
+                    row.description(),
+                    row.amount(),
+                    row.currency(),
+                    row.date(),
+                    row.payerId(),
+                    row.groupId(),
+                    splits.stream()
+                            .map(split -> new CompactSplitDto(split.id(), split.userId(), split.amountOwed()))
+                            .toList(),
+                    row.createdAt(),
+                    row.updatedAt(),
+                    row.paid(),
+                    row.category()
+            );
+        }
+    }
+
+    public record CompactSplitDto(
+            Long id,
+            Long userId,
+            BigDecimal amountOwed
+    ) {
+    }
+
+    public record CompactGroupDto(
+            Long id,
+            String name,
+            String description,
+            List<Long> memberIds,
+            Long createdById,
+            LocalDateTime createdAt,
+            boolean isPublic,
+            Currency defaultCurrency,
+            List<Currency> currencies,
+            String viewToken
+    ) {
+        public static CompactGroupDto fromGroup(GroupDto group) {
+            return new CompactGroupDto(
+                    group.id(),
+                    group.name(),
+                    group.description(),
+                    group.members().stream().map(UserDto::getId).toList(),
+                    group.createdBy() != null ? group.createdBy().getId() : null,
+                    group.createdAt(),
+                    group.isPublic(),
+                    group.defaultCurrency(),
+                    group.currencies(),
+                    group.viewToken()
+            );
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Exchange rates between every pair of currencies on one day, derived once from the PLN rates. The flat array is
+ * indexed by {@code from.ordinal() * N + to.ordinal()} and holds the factor converting minor units of {@code from}
+ * into minor units of {@code to}, so converting a balance is one array read and one multiplication.
+ */
+public final class CrossRateMatrix {
+
+    private static final Currency[] CURRENCIES = Currency.values();
+    private static final int N = CURRENCIES.length;
+
+    private final double[] factors;
+
+    private CrossRateMatrix(double[] factors) {
+        this.factors = factors;
+    }
+
+    /**
+     * @param plnRates PLN per unit of each known currency; PLN itself may be omitted
+     */
+    public static CrossRateMatrix of(Map<Currency, BigDecimal> plnRates) {
+        double[] pln = new double[N];
+        Arrays.fill(pln, Double.NaN);
+        pln[Currency.PLN.ordinal()] = 1;
+        plnRates.forEach((currency, rate) -> pln[currency.ordinal()] = rate.doubleValue());
+
+        double[] factors = new double[N * N];
+        for (Currency from : CURRENCIES) {
+            for (Currency to : CURRENCIES) {
+                factors[from.ordinal() * N + to.ordinal()] = pln[from.ordinal()] / pln[to.ordinal()]
+                        * Math.pow(10, to.getFractionDigits() - from.getFractionDigits());
+            }
+        }
+        return new CrossRateMatrix(factors);
+    }
+
+    /**
+     * @return factor converting minor units of {@code from} into minor units of {@code to}
+     */
+    public double factor(Currency from, Currency to) {
+        double factor = factors[from.ordinal() * N + to.ordinal()];
+        if (Double.isNaN(factor)) {
+            throw new IllegalArgumentException("Brak kursu " + from + "/" + to + " w macierzy kursów");
+        }
+        return factor;
+    }
+}
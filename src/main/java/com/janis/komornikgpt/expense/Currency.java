@@ -2,6 +2,12 @@ package com.janis.komornikgpt.expense;
 
 import lombok.Getter;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 @Getter
 public enum Currency {
 
@@ -22,14 +28,14 @@ public enum Currency {
     NOK("Korona norweska"),
     KRW("Won południowokoreański"),
     TRY("Lira turecka"),
-    RUB("Rubel rosyjski"),
+    RUB("Rubel rosyjski", NbpTable.B),
     INR("Rupia indyjska"),
     BRL("Real brazylijski"),
     ZAR("Rand południowoafrykański"),
 
     DKK("Korona duńska"),
     PLN("Polski złoty"),
-    TWD("Nowy dolar tajwański"),
+    TWD("Nowy dolar tajwański", NbpTable.B),
     THB("Baht tajski"),
     MYR("Ringgit malezyjski"),
     IDR("Rupia indonezyjska"),
@@ -39,20 +45,52 @@ public enum Currency {
     CLP("Peso chilijskie"),
 
     PHP("Peso filipińskie"),
-    AED("Dirham ZEA"),
-    COP("Peso kolumbijskie"),
-    SAR("Rial saudyjski"),
+    AED("Dirham ZEA", NbpTable.B),
+    COP("Peso kolumbijskie", NbpTable.B),
+    SAR("Rial saudyjski", NbpTable.B),
     RON("Lej rumuński"),
-    PEN("Sol peruwiański"),
-    VND("Dong wietnamski"),
-    PKR("Rupia pakistańska"),
-    KZT("Tenge kazachstańskie"),
-    EGP("Funt egipski");
+    PEN("Sol peruwiański", NbpTable.B),
+    VND("Dong wietnamski", NbpTable.B),
+    PKR("Rupia pakistańska", NbpTable.B),
+    KZT("Tenge kazachstańskie", NbpTable.B),
+    EGP("Funt egipski", NbpTable.B);
+
+    private static final Map<String, Currency> BY_CODE = new HashMap<>();
+
+    static {
+        for (Currency currency : values()) {
+            BY_CODE.put(currency.name(), currency);
+        }
+    }
 
     private final String description;
+    private final int fractionDigits;
+    private final NbpTable nbpTable;
 
     Currency(String description) {
+        this(description, NbpTable.A);
+    }
+
+    Currency(String description, NbpTable nbpTable) {
         this.description = description;
+        this.fractionDigits = java.util.Currency.getInstance(name()).getDefaultFractionDigits();
+        this.nbpTable = nbpTable;
+    }
+
+    /**
+     * @return currency with the given ISO code (case-insensitive) or {@code null} when the application does not
+     * support it
+     */
+    public static Currency fromCode(String code) {
+        return code == null ? null : BY_CODE.get(code.toUpperCase(Locale.ROOT));
+    }
+
+    public long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(fractionDigits, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, fractionDigits);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * PLN exchange rates resolved for a set of (currency, date) pairs, reused for every conversion of a request. The
+ * rate of a date is the one of the latest NBP table published on or before it; a {@code null} date means today.
+ * {@code stale} is set when the rate providers were unavailable and some rates are the most recent stored ones.
+ */
+public record DatedRates(Map<Currency, Map<LocalDate, BigDecimal>> rates, boolean stale) {
+
+    public BigDecimal rate(Currency currency, LocalDate date) {
+        if (currency == Currency.PLN) {
+            return BigDecimal.ONE;
+        }
+        LocalDate day = NBPExchangeService.rateDate(date);
+        BigDecimal rate = rates.getOrDefault(currency, Map.of()).get(day);
+        if (rate == null) {
+            throw new IllegalArgumentException(
+                    "Brak kursu waluty " + currency + " z dnia " + day + " w pobranym zestawie kursów");
+        }
+        return rate;
+    }
+
+    /**
+     * @return cross rates of all currencies of this set on the given date (today for {@code null})
+     */
+    public CrossRateMatrix crossRates(LocalDate date) {
+        LocalDate day = NBPExchangeService.rateDate(date);
+        Map<Currency, BigDecimal> plnRates = new EnumMap<>(Currency.class);
+        rates.forEach((currency, byDay) -> {
+            BigDecimal rate = byDay.get(day);
+            if (rate != null) {
+                plnRates.put(currency, rate);
+            }
+        });
+        return CrossRateMatrix.of(plnRates);
+    }
+
+    public BigDecimal toPln(BigDecimal amount, Currency currency, LocalDate date) {
+        if (currency == Currency.PLN) {
+            return amount;
+        }
+        return amount.multiply(rate(currency, date)).setScale(2, RoundingMode.HALF_DOWN);
+    }
+}
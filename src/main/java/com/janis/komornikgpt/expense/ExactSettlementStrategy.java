@@ -0,0 +1,266 @@
+package com.janis.komornikgpt.expense;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Minimum number of transfers. Members are partitioned into as many zero-sum subsets as possible (each subset of
+ * size k is then settled with k-1 transfers). Up to {@code settlement.exact.max-dp-members} members the partition
+ * is found with a bitmask DP, above that with branch-and-bound. When the CPU-time budget runs out, the greedy
+ * result is returned instead.
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "settlement.strategy", havingValue = "exact", matchIfMissing = true)
+public class ExactSettlementStrategy implements SettlementStrategy {
+
+    // The DP allocates long[2^n] + byte[2^n] up front, i.e. 9 bytes per subset: ~9 MB at 20 members, ~150 MB at 24
+    private static final int MAX_DP_MEMBERS_LIMIT = 20;
+    private static final int BUDGET_CHECK_INTERVAL = 4096;
+
+    private final GreedySettlementStrategy greedy = new GreedySettlementStrategy();
+    private final Duration timeBudget;
+    private final int maxDpMembers;
+
+    public ExactSettlementStrategy(@Value("${settlement.exact.time-budget:50ms}") Duration timeBudget,
+                                   @Value("${settlement.exact.max-dp-members:20}") int maxDpMembers) {
+        this.timeBudget = timeBudget;
+        this.maxDpMembers = Math.min(maxDpMembers, MAX_DP_MEMBERS_LIMIT);
+    }
+
+    @Override
+    public TransferPlan settle(long[] balances) {
+        try {
+            return solve(balances, new CpuBudget(timeBudget));
+        } catch (BudgetExceededException e) {
+            log.debug("Exact settlement of {} members exceeded {} budget, falling back to greedy",
+                    balances.length, timeBudget);
+            return greedy.settle(balances);
+        }
+    }
+
+    TransferPlan solve(long[] values, CpuBudget budget) {
+        TransferPlan plan = new TransferPlan(SettlementAlgorithm.EXACT);
+
+        // Two members that cancel out exactly always form a group of an optimal partition
+        // unmatched holds the last waiting member per value, next[] chains the earlier ones
+        Map<Long, Integer> unmatched = new HashMap<>();
+        int[] next = new int[values.length];
+        boolean[] matched = new boolean[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == 0) {
+                matched[i] = true;
+                continue;
+            }
+            Integer partner = unmatched.get(-values[i]);
+            if (partner != null) {
+                if (next[partner] < 0) {
+                    unmatched.remove(-values[i]);
+                } else {
+                    unmatched.put(-values[i], next[partner]);
+                }
+                if (values[i] < 0) {
+                    plan.add(i, partner, -values[i]);
+                } else {
+                    plan.add(partner, i, values[i]);
+                }
+                matched[i] = true;
+                matched[partner] = true;
+            } else {
+                Integer previous = unmatched.put(values[i], i);
+                next[i] = previous == null ? -1 : previous;
+            }
+        }
+
+        int restCount = 0;
+        int[] rest = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (!matched[i]) {
+                rest[restCount++] = i;
+            }
+        }
+        int[] indexes = Arrays.copyOf(rest, restCount);
+
+        long[] remaining = values.clone();
+        if (indexes.length <= maxDpMembers) {
+            for (int[] group : partitionByDp(indexes, values, budget)) {
+                GreedySettlementStrategy.settle(group, remaining, plan);
+            }
+        } else {
+            plan.addAll(new BranchAndBound(indexes, values, budget).solve());
+        }
+        return plan;
+    }
+
+    /**
+     * dp[mask] - the maximum number of zero-sum groups into which the members of mask can be split.
+     */
+    private List<int[]> partitionByDp(int[] indexes, long[] values, CpuBudget budget) {
+        int n = indexes.length;
+        if (n == 0) {
+            return List.of();
+        }
+        int full = (1 << n) - 1;
+        long[] sum = new long[full + 1];
+        byte[] dp = new byte[full + 1];
+        for (int mask = 1; mask <= full; mask++) {
+            if ((mask & (BUDGET_CHECK_INTERVAL - 1)) == 1) {
+                budget.check();
+            }
+            int lowest = Integer.numberOfTrailingZeros(mask);
+            sum[mask] = sum[mask & (mask - 1)] + values[indexes[lowest]];
+            int best = 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int bit = rest & -rest;
+                best = Math.max(best, dp[mask ^ bit]);
+            }
+            dp[mask] = (byte) (best + (sum[mask] == 0 ? 1 : 0));
+        }
+
+        List<int[]> groups = new ArrayList<>();
+        int[] current = new int[n];
+        int currentSize = 0;
+        int mask = full;
+        while (mask != 0) {
+            int target = dp[mask] - (sum[mask] == 0 ? 1 : 0);
+            int chosen = -1;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int bit = rest & -rest;
+                if (dp[mask ^ bit] == target) {
+                    chosen = Integer.numberOfTrailingZeros(bit);
+                    break;
+                }
+            }
+            current[currentSize++] = indexes[chosen];
+            mask ^= 1 << chosen;
+            if (mask == 0 || sum[mask] == 0) {
+                groups.add(Arrays.copyOf(current, currentSize));
+                currentSize = 0;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Settles members one by one against every member of the opposite sign, pruning branches that cannot beat the
+     * best solution found so far (initially the greedy one).
+     */
+    private static final class BranchAndBound {
+        private final int[] indexes;
+        private final long[] debt;
+        private final CpuBudget budget;
+        private final int[] pathFrom;
+        private final int[] pathTo;
+        private final long[] pathAmount;
+        private int depth;
+        private TransferPlan best;
+        private long nodes;
+
+        private BranchAndBound(int[] indexes, long[] values, CpuBudget budget) {
+            this.indexes = indexes;
+            this.debt = new long[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                debt[i] = values[indexes[i]];
+            }
+            this.budget = budget;
+            this.pathFrom = new int[indexes.length];
+            this.pathTo = new int[indexes.length];
+            this.pathAmount = new long[indexes.length];
+            this.best = new TransferPlan(SettlementAlgorithm.EXACT);
+            GreedySettlementStrategy.settle(indexes, values.clone(), best);
+        }
+
+        private TransferPlan solve() {
+            search(0);
+            return best;
+        }
+
+        private void search(int start) {
+            if ((nodes++ & (BUDGET_CHECK_INTERVAL - 1)) == 0) {
+                budget.check();
+            }
+            while (start < debt.length && debt[start] == 0) {
+                start++;
+            }
+            if (start == debt.length) {
+                if (depth < best.size()) {
+                    best = new TransferPlan(SettlementAlgorithm.EXACT);
+                    for (int i = 0; i < depth; i++) {
+                        best.add(pathFrom[i], pathTo[i], pathAmount[i]);
+                    }
+                }
+                return;
+            }
+            int open = 0;
+            for (int i = start; i < debt.length; i++) {
+                if (debt[i] != 0) {
+                    open++;
+                }
+            }
+            if (depth + (open + 1) / 2 >= best.size()) {
+                return;
+            }
+
+            Set<Long> tried = new HashSet<>();
+            for (int j = start + 1; j < debt.length; j++) {
+                if (debt[j] == 0 || (debt[j] > 0) == (debt[start] > 0) || !tried.add(debt[j])) {
+                    continue;
+                }
+                long amount = debt[start];
+                boolean cancels = debt[j] + amount == 0;
+                debt[j] += amount;
+                if (amount > 0) {
+                    pathFrom[depth] = indexes[j];
+                    pathTo[depth] = indexes[start];
+                    pathAmount[depth] = amount;
+                } else {
+                    pathFrom[depth] = indexes[start];
+                    pathTo[depth] = indexes[j];
+                    pathAmount[depth] = -amount;
+                }
+                depth++;
+                search(start + 1);
+                depth--;
+                debt[j] -= amount;
+                if (cancels) {
+                    break;
+                }
+            }
+        }
+    }
+
+    static final class CpuBudget {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        private final boolean cpuTime;
+        private final long deadline;
+
+        CpuBudget(Duration budget) {
+            this.cpuTime = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+            this.deadline = now() + budget.toNanos();
+        }
+
+        void check() {
+            if (now() >= deadline) {
+                throw new BudgetExceededException();
+            }
+        }
+
+        private long now() {
+            return cpuTime ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+        }
+    }
+
+    private static final class BudgetExceededException extends RuntimeException {
+        private BudgetExceededException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -19,7 +19,8 @@ import java.time.LocalDate;
 @RequiredArgsConstructor
 public class ExchangeRate {
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exchange_rate_id_seq")
+	@SequenceGenerator(name = "exchange_rate_id_seq", sequenceName = "exchange_rate_id_seq", allocationSize = 50)
 	private Long id;
 
 	@Column(nullable = false)
@@ -36,4 +37,12 @@ public class ExchangeRate {
 	@Column(nullable = false)
 	private Currency currencyTo = Currency.PLN;
 
+	static ExchangeRate of(Currency currencyFrom, LocalDate date, BigDecimal rate) {
+		ExchangeRate exchangeRate = new ExchangeRate();
+		exchangeRate.setCurrencyFrom(currencyFrom);
+		exchangeRate.setDate(date);
+		exchangeRate.setRate(rate);
+		return exchangeRate;
+	}
+
 }
@@ -0,0 +1,123 @@
+package com.janis.komornikgpt.expense;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * In-memory tier in front of the {@code exchange_rate} table: a {@link RateTimeSeries} per currency plus, per
+ * {@link NbpTable}, the {@link TableCoverage} of the table ranges fetched so far. A rate for a day is resolved with the
+ * latest-publication-on-or-before rule; when the day itself has no rate, the days after the found publication
+ * must be covered, otherwise a later table might exist and the lookup is a miss.
+ */
+@Component
+public class ExchangeRateCache {
+
+    private final Map<Currency, RateTimeSeries> series = new EnumMap<>(Currency.class);
+    private final Map<NbpTable, TableCoverage> coverage = new EnumMap<>(NbpTable.class);
+    private final Duration todayNoTableTtl;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter noTableHits;
+    private final Counter upstreamCalls;
+
+    public ExchangeRateCache(MeterRegistry meterRegistry,
+                             @Value("${exchange-rate.cache.today-no-table-ttl:30m}") Duration todayNoTableTtl) {
+        for (Currency currency : Currency.values()) {
+            series.put(currency, new RateTimeSeries());
+        }
+        for (NbpTable table : NbpTable.values()) {
+            coverage.put(table, new TableCoverage());
+        }
+        this.todayNoTableTtl = todayNoTableTtl;
+        this.hits = meterRegistry.counter("exchange.rate.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("exchange.rate.cache.requests", "result", "miss");
+        this.noTableHits = meterRegistry.counter("exchange.rate.cache.requests", "result", "no-table");
+        this.upstreamCalls = meterRegistry.counter("exchange.rate.upstream.calls");
+        Gauge.builder("exchange.rate.freshest.age", this, ExchangeRateCache::freshestAgeDays)
+                .baseUnit("days")
+                .description("Days since the publication date of the newest known rate")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the rate published on {@code date} or on the closest earlier publication day, or {@code null} when
+     * it is not known without asking the database or NBP
+     */
+    public BigDecimal find(Currency currency, LocalDate date) {
+        int day = (int) date.toEpochDay();
+        RateTimeSeries.Publication publication = series.get(currency).floor(day);
+        if (publication != null && publication.day() == day) {
+            hits.increment();
+            return publication.rate();
+        }
+        if (publication != null && coverage.get(currency.getNbpTable()).covers(publication.day() + 1, day, System.nanoTime())) {
+            noTableHits.increment();
+            return publication.rate();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @return the latest known rate published on or before {@code date}, even if a later table might exist
+     */
+    public BigDecimal findLatestKnown(Currency currency, LocalDate date) {
+        RateTimeSeries.Publication publication = series.get(currency).floor((int) date.toEpochDay());
+        return publication != null ? publication.rate() : null;
+    }
+
+    public void put(Currency currency, LocalDate date, BigDecimal rate) {
+        series.get(currency).put((int) date.toEpochDay(), rate);
+    }
+
+    /**
+     * Marks all tables of the given kind published between the given dates as known. On a publication day of the
+     * table, today stays covered for the configured TTL only; otherwise no table can come before the next
+     * publication day, so the days until then are covered up to its start.
+     */
+    public void markCovered(NbpTable table, LocalDate startDate, LocalDate endDate) {
+        LocalDate today = LocalDate.now();
+        long now = System.nanoTime();
+        int provisionalTo = (int) today.toEpochDay();
+        long provisionalUntil = now + todayNoTableTtl.toNanos();
+        if (!table.publishedOn(today.getDayOfWeek())) {
+            LocalDate nextPublication = today.plusDays(1);
+            while (!table.publishedOn(nextPublication.getDayOfWeek())) {
+                nextPublication = nextPublication.plusDays(1);
+            }
+            provisionalTo = (int) nextPublication.toEpochDay() - 1;
+            provisionalUntil = now + Duration.between(LocalDateTime.now(), nextPublication.atStartOfDay()).toNanos();
+        }
+        coverage.get(table).add((int) startDate.toEpochDay(), (int) endDate.toEpochDay(), (int) today.toEpochDay(),
+                provisionalTo, provisionalUntil);
+    }
+
+    /**
+     * @return the first day from {@code startDate} on whose table of the given kind is not known yet
+     */
+    public LocalDate firstUncoveredDate(NbpTable table, LocalDate startDate) {
+        return LocalDate.ofEpochDay(coverage.get(table).firstUncovered((int) startDate.toEpochDay(), System.nanoTime()));
+    }
+
+    public void recordUpstreamCall() {
+        upstreamCalls.increment();
+    }
+
+    private double freshestAgeDays() {
+        int freshest = Integer.MIN_VALUE;
+        for (RateTimeSeries currencySeries : series.values()) {
+            freshest = Math.max(freshest, currencySeries.lastDay());
+        }
+        return freshest == Integer.MIN_VALUE ? Double.NaN : LocalDate.now().toEpochDay() - freshest;
+    }
+}
@@ -0,0 +1,31 @@
+package com.janis.komornikgpt.expense;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * {@code POST /actuator/exchangerates} with {@code {"from": "2024-01-01", "to": "2024-06-30"}} backfills the NBP
+ * table A and B rates of the given period.
+ */
+@Component
+@Endpoint(id = "exchangerates")
+@RequiredArgsConstructor
+public class ExchangeRateEndpoint {
+
+    private final NBPExchangeService nbpExchangeService;
+
+    @WriteOperation
+    public Map<String, Object> backfill(String from, String to) {
+        LocalDate startDate = LocalDate.parse(from);
+        LocalDate endDate = LocalDate.parse(to);
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("Data końcowa nie może być wcześniejsza niż początkowa");
+        }
+        return Map.of("from", startDate, "to", endDate, "inserted", nbpExchangeService.backfill(startDate, endDate));
+    }
+}
@@ -0,0 +1,62 @@
+package com.janis.komornikgpt.expense;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Fetches the NBP tables of the day shortly after their publication (NBP publishes table A between 11:45 and 12:15
+ * on business days, table B on Wednesdays), so user requests find the rates already stored. When the table is not there yet or NBP
+ * fails, the fetch is retried with exponential backoff.
+ */
+@Log4j2
+@Component
+public class ExchangeRatePrefetchJob {
+
+    static final ZoneId NBP_ZONE = ZoneId.of("Europe/Warsaw");
+
+    private final NBPExchangeService nbpExchangeService;
+    private final TaskScheduler taskScheduler;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+
+    public ExchangeRatePrefetchJob(NBPExchangeService nbpExchangeService,
+                                   TaskScheduler taskScheduler,
+                                   @Value("${exchange-rate.prefetch.max-attempts:6}") int maxAttempts,
+                                   @Value("${exchange-rate.prefetch.initial-backoff:5m}") Duration initialBackoff) {
+        this.nbpExchangeService = nbpExchangeService;
+        this.taskScheduler = taskScheduler;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+    }
+
+    @Scheduled(cron = "${exchange-rate.prefetch.cron:0 20 12 * * MON-FRI}", zone = "Europe/Warsaw")
+    public void prefetchTodaysTable() {
+        attempt(LocalDate.now(NBP_ZONE), 1);
+    }
+
+    void attempt(LocalDate date, int attempt) {
+        try {
+            if (nbpExchangeService.prefetch(date)) {
+                return;
+            }
+            log.info("Tabela kursów NBP z dnia {} nie jest jeszcze opublikowana (próba {}/{})", date, attempt, maxAttempts);
+        } catch (RuntimeException e) {
+            log.warn("Nie udało się pobrać tabeli kursów NBP z dnia {} (próba {}/{}): {}",
+                    date, attempt, maxAttempts, e.getMessage());
+        }
+        if (attempt >= maxAttempts) {
+            log.warn("Rezygnuję z pobrania tabeli kursów NBP z dnia {} po {} próbach", date, attempt);
+            return;
+        }
+        Duration backoff = initialBackoff.multipliedBy(1L << (attempt - 1));
+        taskScheduler.schedule(() -> attempt(date, attempt + 1), Instant.now().plus(backoff));
+    }
+}
@@ -0,0 +1,19 @@
+package com.janis.komornikgpt.expense;
+
+import java.time.LocalDate;
+
+/**
+ * Source of published PLN exchange rate tables. Implementations are tried in their {@link
+ * org.springframework.core.annotation.Order} by {@link ResilientExchangeRateProvider}.
+ */
+public interface ExchangeRateProvider {
+
+    String name();
+
+    /**
+     * @return rates of all supported currencies of the given table kind from every table of that kind published
+     * between the given dates (inclusive)
+     * @throws RuntimeException when the source is unavailable
+     */
+    FetchedTables fetchTables(NbpTable table, LocalDate startDate, LocalDate endDate);
+}
@@ -3,9 +3,19 @@ package com.janis.komornikgpt.expense;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long> {
+public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long>, ExchangeRateRepositoryCustom {
     Optional<ExchangeRate> findByCurrencyFromAndCurrencyToAndDate(
             Currency currencyFrom, Currency currencyTo, LocalDate date);
-}
\ No newline at end of file
+
+    List<ExchangeRate> findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+            Currency currencyTo, Collection<Currency> currenciesFrom, LocalDate startDate, LocalDate endDate);
+
+    List<ExchangeRate> findAllByCurrencyToAndDateBetween(Currency currencyTo, LocalDate startDate, LocalDate endDate);
+
+    Optional<ExchangeRate> findFirstByCurrencyFromAndCurrencyToAndDateLessThanEqualOrderByDateDesc(
+            Currency currencyFrom, Currency currencyTo, LocalDate date);
+}
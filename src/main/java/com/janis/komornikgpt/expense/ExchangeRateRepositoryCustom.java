@@ -0,0 +1,13 @@
+package com.janis.komornikgpt.expense;
+
+import java.util.Collection;
+
+public interface ExchangeRateRepositoryCustom {
+
+    /**
+     * Inserts all rates with one JDBC batch, skipping (currency, date) pairs that are already stored.
+     *
+     * @return number of inserted rows
+     */
+    int insertMissing(Collection<ExchangeRate> rates);
+}
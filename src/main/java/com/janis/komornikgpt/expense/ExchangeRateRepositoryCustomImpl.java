@@ -0,0 +1,38 @@
+package com.janis.komornikgpt.expense;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ExchangeRateRepositoryCustomImpl implements ExchangeRateRepositoryCustom {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO exchange_rate (date, currency_from, rate, currency_to)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (currency_from, currency_to, date) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int insertMissing(Collection<ExchangeRate> rates) {
+        if (rates.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> rows = new ArrayList<>(rates.size());
+        for (ExchangeRate rate : rates) {
+            rows.add(new Object[]{Date.valueOf(rate.getDate()), rate.getCurrencyFrom().name(), rate.getRate(),
+                    rate.getCurrencyTo().name()});
+        }
+        int inserted = 0;
+        for (int count : jdbcTemplate.batchUpdate(INSERT_SQL, rows)) {
+            inserted += Math.max(count, 0);
+        }
+        return inserted;
+    }
+}
@@ -0,0 +1,9 @@
+package com.janis.komornikgpt.expense;
+
+public record ExchangeRateTableResponse(
+        String table,
+        String no,
+        String effectiveDate,
+        TableRate[] rates
+) {
+}
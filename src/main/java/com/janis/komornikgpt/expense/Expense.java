@@ -17,14 +17,32 @@ import java.util.Objects;
 
 @Entity
 @Table(name = "expenses")
+@NamedEntityGraph(
+        name = Expense.DETAILS_GRAPH,
+        attributeNodes = {
+                @NamedAttributeNode("payer"),
+                @NamedAttributeNode(value = "group", subgraph = "group"),
+                @NamedAttributeNode(value = "splits", subgraph = "splits")
+        },
+        subgraphs = {
+                @NamedSubgraph(name = "group", attributeNodes = @NamedAttributeNode("createdBy")),
+                @NamedSubgraph(name = "splits", attributeNodes = @NamedAttributeNode("user"))
+        })
 @Getter
 @Setter
 @ToString
 @RequiredArgsConstructor
 public class Expense {
 
+    /**
+     * Everything {@link ExpenseDto} reads except the group members and currencies: a second bag cannot be fetched
+     * in the same join, so those are loaded per batch of groups ({@code hibernate.default_batch_fetch_size}).
+     */
+    public static final String DETAILS_GRAPH = "Expense.details";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "expenses_id_seq")
+    @SequenceGenerator(name = "expenses_id_seq", sequenceName = "expenses_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -38,6 +56,7 @@ public class Expense {
     @Column(nullable = false)
     private String description;
 
+    @Column(nullable = false)
     private LocalDateTime date;
 
     @Enumerated(EnumType.STRING)
@@ -70,11 +89,17 @@ public class Expense {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        if (date == null) {
+            date = createdAt;
+        }
     }
 
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        if (date == null) {
+            date = createdAt;
+        }
     }
 
     @Override
@@ -0,0 +1,45 @@
+package com.janis.komornikgpt.expense;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in an expense list ordered by {@code (date, id)} descending: the next page starts after the expense with
+ * this date and id. Clients get it as an opaque string and send it back unchanged.
+ */
+public record ExpenseCursor(LocalDateTime date, Long id) {
+
+    /**
+     * Position before the newest expense, the first page starts after it.
+     */
+    public static final ExpenseCursor FIRST = new ExpenseCursor(LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE);
+
+    public static ExpenseCursor after(ExpenseRow expense) {
+        return new ExpenseCursor(expense.date(), expense.id());
+    }
+
+    public String encode() {
+        String value = date + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded cursor, or {@link #FIRST} for the first page
+     * @throws IllegalArgumentException when the cursor was not issued by {@link #encode()}
+     */
+    public static ExpenseCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('_');
+            return new ExpenseCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Nieprawidłowy kursor stronicowania: " + cursor);
+        }
+    }
+}
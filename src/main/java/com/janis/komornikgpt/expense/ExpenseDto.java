@@ -1,12 +1,15 @@
 package com.janis.komornikgpt.expense;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.janis.komornikgpt.group.GroupDto;
 import com.janis.komornikgpt.user.UserDto;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 
+@JsonFilter(ExpenseDto.FIELDS_FILTER)
 public record ExpenseDto(
         Long id,
         String description,
@@ -21,6 +24,10 @@ public record ExpenseDto(
         Boolean isPaid,
         ExpenseCategory category
 ) {
+    public static final String FIELDS_FILTER = "expenseFields";
+    public static final Set<String> FIELDS = Set.of("id", "description", "amount", "currency", "date", "payer",
+            "group", "splits", "createdAt", "updatedAt", "isPaid", "category");
+
     public static ExpenseDto fromExpense(Expense expense) {
         return new ExpenseDto(
                 expense.getId(),
@@ -40,6 +47,23 @@ public record ExpenseDto(
         );
     }
 
+    public static ExpenseDto fromRow(ExpenseRow row, UserDto payer, GroupDto group, List<ExpenseSplitDto> splits) {
+        return new ExpenseDto(
+                row.id(),
+                row.description(),
+                row.amount(),
+                row.currency(),
+                row.date(),
+                payer,
+                group,
+                splits,
+                row.createdAt(),
+                row.updatedAt(),
+                row.paid(),
+                row.category()
+        );
+    }
+
     public record ExpenseSplitDto(
             Long id,
             UserDto user,
@@ -52,5 +76,9 @@ public record ExpenseDto(
                     split.getAmountOwed()
             );
         }
+
+        public static ExpenseSplitDto fromRow(ExpenseSplitRow row, UserDto user) {
+            return new ExpenseSplitDto(row.id(), user, row.amountOwed());
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One line of the group expense export, with the payer and split users referenced by username.
+ */
+public record ExpenseExportRow(Long id, LocalDateTime date, String description, ExpenseCategory category,
+                               BigDecimal amount, Currency currency, Long payerId, String payer, boolean paid,
+                               List<Split> splits) {
+
+    public record Split(Long userId, String user, BigDecimal amountOwed) {
+    }
+}
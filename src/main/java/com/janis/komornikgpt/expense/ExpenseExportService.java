@@ -0,0 +1,196 @@
+package com.janis.komornikgpt.expense;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Streams the whole expense history of a group as CSV or NDJSON. Rows are read through a forward-only cursor
+ * ({@link #FETCH_SIZE} rows per round trip) and written as they arrive, so the heap use does not depend on the
+ * number of expenses and the first bytes leave before the query is finished.
+ */
+@Slf4j
+@Service
+public class ExpenseExportService {
+
+    static final int FETCH_SIZE = 500;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+    private static final String CSV_HEADER = "id,date,description,category,amount,currency,payerId,payer,paid,splits";
+    private static final DateTimeFormatter CSV_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Splits are aggregated per expense, so every cursor row is one complete export line
+    private static final String EXPORT_SQL = """
+            SELECT e.id, e.date, e.description, e.category, e.amount, e.currency, e.payer_id, p.username AS payer,
+                   e.is_paid, s.user_ids, s.usernames, s.amounts
+            FROM expenses e
+            LEFT JOIN users p ON p.id = e.payer_id
+            CROSS JOIN LATERAL (
+                SELECT array_agg(es.user_id ORDER BY es.id) AS user_ids,
+                       array_agg(u.username ORDER BY es.id) AS usernames,
+                       array_agg(es.amount_owed ORDER BY es.id) AS amounts
+                FROM expense_splits es
+                JOIN users u ON u.id = es.user_id
+                WHERE es.expense_id = e.id
+            ) s
+            WHERE e.group_id = ?
+            ORDER BY e.date DESC, e.id DESC
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+
+    public ExpenseExportService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                JsonMapper jsonMapper) {
+        // The PostgreSQL driver honours the fetch size only with autocommit off, hence the read-only transaction
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.jsonMapper = jsonMapper;
+    }
+
+    /**
+     * Writes all expenses of the group to {@code out}, newest first. The caller checks access to the group.
+     *
+     * @param gzip compress the output, the caller names the file accordingly
+     */
+    public void export(Long groupId, ExpenseExportFormat format, boolean gzip, OutputStream out) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, UTF_8), BUFFER_SIZE);
+        if (format == ExpenseExportFormat.CSV) {
+            writer.write(BYTE_ORDER_MARK);
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        int[] exported = {0};
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(EXPORT_SQL, rs -> {
+                ExpenseExportRow row = row(rs);
+                try {
+                    if (format == ExpenseExportFormat.CSV) {
+                        writeCsv(writer, row);
+                    } else {
+                        writer.write(jsonMapper.writeValueAsString(row));
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    // The client went away, aborting the query closes the cursor
+                    throw new UncheckedIOException(e);
+                }
+                exported[0]++;
+            }, groupId));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        if (target instanceof GZIPOutputStream compressed) {
+            compressed.finish();
+        }
+        log.debug("Wyeksportowano {} wydatków grupy {} ({})", exported[0], groupId, format);
+    }
+
+    private static ExpenseExportRow row(ResultSet rs) throws SQLException {
+        Long[] userIds = elements(rs.getArray("user_ids"), new Long[0]);
+        String[] usernames = elements(rs.getArray("usernames"), new String[0]);
+        BigDecimal[] amounts = elements(rs.getArray("amounts"), new BigDecimal[0]);
+        List<ExpenseExportRow.Split> splits = new ArrayList<>(userIds.length);
+        for (int i = 0; i < userIds.length; i++) {
+            splits.add(new ExpenseExportRow.Split(userIds[i], usernames[i], amounts[i]));
+        }
+        String category = rs.getString("category");
+        String currency = rs.getString("currency");
+        return new ExpenseExportRow(
+                rs.getLong("id"),
+                rs.getObject("date", LocalDateTime.class),
+                rs.getString("description"),
+                category != null ? ExpenseCategory.valueOf(category) : null,
+                rs.getBigDecimal("amount"),
+                currency != null ? Currency.valueOf(currency) : null,
+                rs.getObject("payer_id", Long.class),
+                rs.getString("payer"),
+                rs.getBoolean("is_paid"),
+                splits);
+    }
+
+    // array_agg over no splits yields NULL
+    @SuppressWarnings("unchecked")
+    private static <T> T[] elements(Array array, T[] empty) throws SQLException {
+        if (array == null) {
+            return empty;
+        }
+        try {
+            return (T[]) array.getArray();
+        } finally {
+            array.free();
+        }
+    }
+
+    static void writeCsv(Writer writer, ExpenseExportRow row) throws IOException {
+        writer.write(String.valueOf(row.id()));
+        writer.write(',');
+        writer.write(row.date() != null ? CSV_DATE.format(row.date()) : "");
+        writer.write(',');
+        writer.write(csvText(row.description()));
+        writer.write(',');
+        writer.write(row.category() != null ? row.category().name() : "");
+        writer.write(',');
+        writer.write(row.amount() != null ? row.amount().toPlainString() : "");
+        writer.write(',');
+        writer.write(row.currency() != null ? row.currency().name() : "");
+        writer.write(',');
+        writer.write(row.payerId() != null ? String.valueOf(row.payerId()) : "");
+        writer.write(',');
+        writer.write(csvText(row.payer()));
+        writer.write(',');
+        writer.write(String.valueOf(row.paid()));
+        writer.write(',');
+        StringBuilder splits = new StringBuilder();
+        for (ExpenseExportRow.Split split : row.splits()) {
+            if (!splits.isEmpty()) {
+                splits.append("; ");
+            }
+            splits.append(split.user()).append('=')
+                    .append(split.amountOwed() != null ? split.amountOwed().toPlainString() : "");
+        }
+        writer.write(csvText(splits.toString()));
+        writer.write('\n');
+    }
+
+    /**
+     * Quotes the value when needed (RFC 4180) and defuses text a spreadsheet would evaluate as a formula.
+     */
+    static String csvText(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String text = "=+-@\t\r".indexOf(value.charAt(0)) >= 0 ? "'" + value : value;
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
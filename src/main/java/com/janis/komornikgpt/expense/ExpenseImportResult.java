@@ -0,0 +1,20 @@
+package com.janis.komornikgpt.expense;
+
+import java.util.List;
+
+/**
+ * Outcome of a CSV import. Nothing is imported when any row is rejected; {@code errors} lists the first
+ * {@value ExpenseImportService#MAX_REPORTED_ERRORS} rejected rows.
+ *
+ * @param rows     data rows read from the file
+ * @param imported expenses inserted, 0 for a dry run or a rejected file
+ * @param rejected rows that failed validation
+ */
+public record ExpenseImportResult(int rows, int imported, int rejected, List<RowError> errors) {
+
+    /**
+     * @param line line of the file at which the row starts, the header is line 1
+     */
+    public record RowError(long line, String message) {
+    }
+}
@@ -0,0 +1,389 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.exception.ResourceNotFoundException;
+import com.janis.komornikgpt.group.GroupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Imports expenses of a group from CSV in the layout of {@link ExpenseExportService} (extra columns such as
+ * {@code id} are ignored). The file is read twice: the first pass validates every row against the group members,
+ * loaded with one query, and imports nothing when a row is rejected, so a corrected file can be uploaded again
+ * without duplicates. The second pass inserts expenses and splits with JDBC batches, one transaction per
+ * {@value #CHUNK_SIZE} rows.
+ */
+@Slf4j
+@Service
+public class ExpenseImportService {
+
+    static final int CHUNK_SIZE = 1000;
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final String MEMBERS_SQL = """
+            SELECT u.username, u.id
+            FROM users u
+            JOIN group_users gu ON gu.user_id = u.id
+            WHERE gu.group_id = ?
+            """;
+    private static final String INSERT_EXPENSE_SQL = """
+            INSERT INTO expenses (id, description, amount, currency, date, payer_id, group_id, created_at, updated_at,
+                                  is_paid, category)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    // Ids are taken up front in the blocks of Hibernate's pooled optimizer (V6__Pooled_Id_Sequences): nextval returns
+    // the last of ID_ALLOCATION_SIZE reserved ids, so the import and the entities never hand out the same id
+    private static final String RESERVE_IDS_SQL = "SELECT nextval(?) FROM generate_series(1, ?)";
+    private static final int ID_ALLOCATION_SIZE = 50;
+    private static final String INSERT_SPLIT_SQL =
+            "INSERT INTO expense_splits (id, expense_id, user_id, amount_owed) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final GroupRepository groupRepository;
+    private final GroupBalanceService groupBalanceService;
+
+    public ExpenseImportService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                GroupRepository groupRepository, GroupBalanceService groupBalanceService) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.groupRepository = groupRepository;
+        this.groupBalanceService = groupBalanceService;
+    }
+
+    /**
+     * The caller checks access to the group.
+     *
+     * @param dryRun validate only
+     * @throws IllegalArgumentException when the header is missing required columns
+     */
+    public ExpenseImportResult importCsv(Long groupId, InputStreamSource csv, boolean dryRun) throws IOException {
+        Currency defaultCurrency = groupRepository.findDefaultCurrency(groupId)
+                .orElseThrow(() -> new ResourceNotFoundException("Nie znaleziono grupy o id: " + groupId));
+        Map<String, Long> members = new HashMap<>();
+        jdbcTemplate.query(MEMBERS_SQL, rs -> {
+            members.put(rs.getString("username"), rs.getLong("id"));
+        }, groupId);
+
+        int[] rows = {0};
+        List<ExpenseImportResult.RowError> errors = new ArrayList<>();
+        int rejected = read(csv, members, defaultCurrency, (line, expense, error) -> {
+            rows[0]++;
+            if (error != null && errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ExpenseImportResult.RowError(line, error));
+            }
+        });
+        if (rejected > 0 || dryRun) {
+            return new ExpenseImportResult(rows[0], 0, rejected, errors);
+        }
+
+        List<ImportedExpense> chunk = new ArrayList<>(CHUNK_SIZE);
+        read(csv, members, defaultCurrency, (line, expense, error) -> {
+            chunk.add(expense);
+            if (chunk.size() == CHUNK_SIZE) {
+                insertChunk(groupId, chunk);
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            insertChunk(groupId, chunk);
+        }
+        log.info("Zaimportowano {} wydatków do grupy {}", rows[0], groupId);
+        return new ExpenseImportResult(rows[0], rows[0], 0, List.of());
+    }
+
+    private interface RowHandler {
+        void accept(long line, ImportedExpense expense, String error);
+    }
+
+    /**
+     * @return number of rejected rows
+     */
+    private static int read(InputStreamSource csv, Map<String, Long> members, Currency defaultCurrency,
+                            RowHandler handler) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(csv.getInputStream(), UTF_8))) {
+            CsvRecordReader reader = new CsvRecordReader(in);
+            List<String> header = reader.next();
+            if (header == null) {
+                throw new IllegalArgumentException("Plik CSV jest pusty");
+            }
+            RowParser parser = RowParser.of(header, members, defaultCurrency);
+            int rejected = 0;
+            List<String> fields;
+            while ((fields = reader.next()) != null) {
+                if (fields.size() == 1 && fields.getFirst().isBlank()) {
+                    continue;
+                }
+                try {
+                    handler.accept(reader.recordLine(), parser.parse(fields), null);
+                } catch (IllegalArgumentException e) {
+                    rejected++;
+                    handler.accept(reader.recordLine(), null, e.getMessage());
+                }
+            }
+            return rejected;
+        }
+    }
+
+    private void insertChunk(Long groupId, List<ImportedExpense> chunk) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Long> ids = reserveIds("expenses_id_seq", chunk.size());
+            jdbcTemplate.batchUpdate(INSERT_EXPENSE_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ImportedExpense expense = chunk.get(i);
+                    ps.setLong(1, ids.get(i));
+                    ps.setString(2, expense.description());
+                    ps.setBigDecimal(3, expense.amount());
+                    ps.setString(4, expense.currency().name());
+                    ps.setTimestamp(5, Timestamp.valueOf(expense.date()));
+                    ps.setLong(6, expense.payerId());
+                    ps.setLong(7, groupId);
+                    ps.setTimestamp(8, now);
+                    ps.setTimestamp(9, now);
+                    ps.setBoolean(10, expense.paid());
+                    ps.setString(11, expense.category().name());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return chunk.size();
+                }
+            });
+
+            List<Long> splitIds = reserveIds("expense_splits_id_seq",
+                    chunk.stream().mapToInt(expense -> expense.splits().size()).sum());
+            List<Object[]> splits = new ArrayList<>(splitIds.size());
+            Map<Currency, Map<Long, BigDecimal>> deltas = new EnumMap<>(Currency.class);
+            for (int i = 0; i < chunk.size(); i++) {
+                ImportedExpense expense = chunk.get(i);
+                Long expenseId = ids.get(i);
+                Map<Long, BigDecimal> currencyDeltas = expense.paid()
+                        ? null : deltas.computeIfAbsent(expense.currency(), currency -> new LinkedHashMap<>());
+                if (currencyDeltas != null) {
+                    currencyDeltas.merge(expense.payerId(), expense.amount(), BigDecimal::add);
+                }
+                for (ImportedSplit split : expense.splits()) {
+                    splits.add(new Object[]{splitIds.get(splits.size()), expenseId, split.userId(), split.amountOwed()});
+                    if (currencyDeltas != null) {
+                        currencyDeltas.merge(split.userId(), split.amountOwed().negate(), BigDecimal::add);
+                    }
+                }
+            }
+            jdbcTemplate.batchUpdate(INSERT_SPLIT_SQL, splits);
+            deltas.forEach((currency, userDeltas) -> groupBalanceService.addDeltas(groupId, currency, userDeltas));
+            groupRepository.bumpDataVersion(groupId);
+        });
+    }
+
+    private List<Long> reserveIds(String sequence, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            int blocks = Math.ceilDiv(count - ids.size(), ID_ALLOCATION_SIZE);
+            for (Long last : jdbcTemplate.queryForList(RESERVE_IDS_SQL, Long.class, sequence, blocks)) {
+                // The first value of a fresh sequence is 1, a block of a single id
+                for (long id = Math.max(1, last - ID_ALLOCATION_SIZE + 1); id <= last && ids.size() < count; id++) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    record ImportedSplit(Long userId, BigDecimal amountOwed) {
+    }
+
+    record ImportedExpense(LocalDateTime date, String description, BigDecimal amount, Currency currency,
+                           ExpenseCategory category, Long payerId, boolean paid, List<ImportedSplit> splits) {
+    }
+
+    /**
+     * Validates one data row. Splits are written as {@code user=amount; user=amount}, or {@code user; user} to
+     * split the amount equally (leftover minor units of the row currency go to the first users).
+     */
+    record RowParser(Map<String, Integer> columns, Map<String, Long> members, Currency defaultCurrency) {
+
+        private static final List<String> REQUIRED_COLUMNS = List.of("date", "description", "amount", "payer", "splits");
+        private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd[ ]['T']HH:mm[:ss]");
+        private static final int MAX_DESCRIPTION_LENGTH = 255;
+
+        static RowParser of(List<String> header, Map<String, Long> members, Currency defaultCurrency) {
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            List<String> missing = REQUIRED_COLUMNS.stream().filter(column -> !columns.containsKey(column)).toList();
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("Brak wymaganych kolumn w nagłówku CSV: " + String.join(", ", missing));
+            }
+            return new RowParser(columns, members, defaultCurrency);
+        }
+
+        ImportedExpense parse(List<String> fields) {
+            String description = text(value(fields, "description"));
+            if (description.isEmpty()) {
+                throw new IllegalArgumentException("Brak opisu");
+            }
+            if (description.length() > MAX_DESCRIPTION_LENGTH) {
+                throw new IllegalArgumentException("Opis jest dłuższy niż " + MAX_DESCRIPTION_LENGTH + " znaków");
+            }
+            String code = value(fields, "currency");
+            Currency currency = code.isEmpty() ? defaultCurrency : constant(Currency.class, code, "Nieznana waluta");
+            BigDecimal amount = amount(value(fields, "amount"), currency);
+            if (amount.signum() <= 0) {
+                throw new IllegalArgumentException("Kwota musi być dodatnia: " + amount);
+            }
+            String category = value(fields, "category");
+            return new ImportedExpense(
+                    date(value(fields, "date")),
+                    description,
+                    amount,
+                    currency,
+                    category.isEmpty() ? ExpenseCategory.NO_CATEGORY_GENERAL
+                            : constant(ExpenseCategory.class, category, "Nieznana kategoria"),
+                    member(text(value(fields, "payer"))),
+                    paid(value(fields, "paid")),
+                    splits(value(fields, "splits"), amount, currency));
+        }
+
+        private String value(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            return index != null && index < fields.size() ? fields.get(index).trim() : "";
+        }
+
+        private Long member(String username) {
+            Long id = members.get(username);
+            if (id == null) {
+                throw new IllegalArgumentException(username.isEmpty()
+                        ? "Brak płacącego" : "Użytkownik " + username + " nie należy do grupy");
+            }
+            return id;
+        }
+
+        private List<ImportedSplit> splits(String value, BigDecimal amount, Currency currency) {
+            List<String> users = new ArrayList<>();
+            List<BigDecimal> amounts = new ArrayList<>();
+            for (String entry : value.split(";")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                int separator = entry.lastIndexOf('=');
+                users.add(text(separator < 0 ? entry.trim() : entry.substring(0, separator).trim()));
+                amounts.add(separator < 0 ? null : amount(entry.substring(separator + 1).trim(), currency));
+            }
+            if (users.isEmpty()) {
+                throw new IllegalArgumentException("Brak podziału wydatku");
+            }
+            if (amounts.stream().allMatch(owed -> owed == null)) {
+                amounts = equalShares(amount, users.size(), currency);
+            } else if (amounts.contains(null)) {
+                throw new IllegalArgumentException("Podaj kwoty dla wszystkich uczestników podziału albo dla żadnego");
+            }
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < users.size(); i++) {
+                if (!seen.add(users.get(i))) {
+                    throw new IllegalArgumentException(
+                            "Użytkownik " + users.get(i) + " występuje w podziale więcej niż raz");
+                }
+                // A negative or zero share would move the payer's balance the wrong way
+                if (amounts.get(i).signum() <= 0) {
+                    throw new IllegalArgumentException(
+                            "Kwota podziału użytkownika " + users.get(i) + " musi być dodatnia: " + amounts.get(i));
+                }
+            }
+            BigDecimal total = amounts.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+            if (total.compareTo(amount) != 0) {
+                throw new IllegalArgumentException("Suma podziału " + total + " różni się od kwoty " + amount);
+            }
+            List<ImportedSplit> splits = new ArrayList<>(users.size());
+            for (int i = 0; i < users.size(); i++) {
+                splits.add(new ImportedSplit(member(users.get(i)), amounts.get(i)));
+            }
+            return splits;
+        }
+
+        // In minor units like BalanceSheet, so the shares of a zero-digit currency stay whole
+        private static List<BigDecimal> equalShares(BigDecimal amount, int count, Currency currency) {
+            long total = currency.toMinorUnits(amount);
+            long share = total / count;
+            long leftover = total % count;
+            List<BigDecimal> shares = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                shares.add(currency.fromMinorUnits(i < leftover ? share + 1 : share));
+            }
+            return shares;
+        }
+
+        private static LocalDateTime date(String value) {
+            try {
+                return value.length() == 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value, DATE_TIME);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Niepoprawna data: " + value);
+            }
+        }
+
+        private static BigDecimal amount(String value, Currency currency) {
+            String number = value.indexOf('.') < 0 ? value.replace(',', '.') : value;
+            try {
+                return new BigDecimal(number).setScale(currency.getFractionDigits(), RoundingMode.UNNECESSARY);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Niepoprawna kwota: " + value);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Kwota ma więcej miejsc po przecinku, niż pozwala waluta "
+                        + currency + " (" + currency.getFractionDigits() + "): " + value);
+            }
+        }
+
+        private static boolean paid(String value) {
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "", "false" -> false;
+                case "true" -> true;
+                default -> throw new IllegalArgumentException("Niepoprawna wartość paid: " + value);
+            };
+        }
+
+        private static <E extends Enum<E>> E constant(Class<E> type, String value, String message) {
+            try {
+                return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(message + ": " + value);
+            }
+        }
+
+        // Reverts the formula guard of the export
+        private static String text(String value) {
+            return value.length() > 1 && value.charAt(0) == '\'' && "=+-@\t\r".indexOf(value.charAt(1)) >= 0
+                    ? value.substring(1) : value;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.janis.komornikgpt.expense;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * Representation of expense lists: full DTOs with embedded users and groups, or the normalized
+ * {@link CompactExpensesDto}, requested with {@code Accept: application/vnd.komornik.compact+json} or
+ * {@code ?format=compact}.
+ */
+public enum ExpenseListFormat {
+    FULL,
+    COMPACT;
+
+    public static final String COMPACT_MEDIA_TYPE_VALUE = "application/vnd.komornik.compact+json";
+    public static final MediaType COMPACT_MEDIA_TYPE = MediaType.parseMediaType(COMPACT_MEDIA_TYPE_VALUE);
+
+    /**
+     * @param format value of the {@code format} query parameter, takes precedence over the header
+     * @param accept value of the {@code Accept} header
+     * @throws IllegalArgumentException when the format is not supported
+     */
+    public static ExpenseListFormat resolve(String format, String accept) {
+        if (format != null && !format.isBlank()) {
+            return switch (format.trim().toLowerCase()) {
+                case "full" -> FULL;
+                case "compact" -> COMPACT;
+                default -> throw new IllegalArgumentException("Nieobsługiwany format listy wydatków: " + format);
+            };
+        }
+        if (accept == null || accept.isBlank()) {
+            return FULL;
+        }
+        try {
+            return MediaType.parseMediaTypes(accept).stream().anyMatch(COMPACT_MEDIA_TYPE::equalsTypeAndSubtype)
+                    ? COMPACT : FULL;
+        } catch (InvalidMediaTypeException e) {
+            return FULL;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.group.GroupDto;
+import com.janis.komornikgpt.user.UserDto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expenses read for one list response: projected rows with their splits and the users and groups they reference,
+ * each loaded once. Rendered as full {@link ExpenseDto}s, grouped by group, or as a {@link CompactExpensesDto}.
+ *
+ * @param nextCursor cursor of the next page, {@code null} on the last page and for unpaged lists
+ */
+public record ExpenseListing(
+        List<ExpenseRow> rows,
+        Map<Long, List<ExpenseSplitRow>> splits,
+        Map<Long, UserDto> users,
+        Map<Long, GroupDto> groups,
+        String nextCursor
+) {
+
+    public static final ExpenseListing EMPTY = new ExpenseListing(List.of(), Map.of(), Map.of(), Map.of(), null);
+
+    public List<ExpenseDto> expenses() {
+        List<ExpenseDto> dtos = new ArrayList<>(rows.size());
+        for (ExpenseRow row : rows) {
+            List<ExpenseDto.ExpenseSplitDto> expenseSplits = splitsOf(row).stream()
+                    .map(split -> ExpenseDto.ExpenseSplitDto.fromRow(split, users.get(split.userId())))
+                    .toList();
+            dtos.add(ExpenseDto.fromRow(row, users.get(row.payerId()), groups.get(row.groupId()), expenseSplits));
+        }
+        return dtos;
+    }
+
+    /**
+     * Expenses grouped by group in the order of their newest expense. Keyed by group id: Group hashes by class only
+     * and GroupDto would hash its member lists.
+     */
+    public List<GroupExpensesDto> byGroup() {
+        Map<Long, GroupExpensesDto> byGroup = new LinkedHashMap<>();
+        for (ExpenseDto expense : expenses()) {
+            if (expense.group() == null) {
+                continue;
+            }
+            byGroup.computeIfAbsent(expense.group().id(), id -> new GroupExpensesDto(expense.group(), new ArrayList<>()))
+                    .expenses().add(expense);
+        }
+        return List.copyOf(byGroup.values());
+    }
+
+    public CompactExpensesDto compact() {
+        List<CompactExpensesDto.CompactExpenseDto> expenses = new ArrayList<>(rows.size());
+        for (ExpenseRow row : rows) {
+            expenses.add(CompactExpensesDto.CompactExpenseDto.fromRow(row, splitsOf(row)));
+        }
+        Map<Long, UserDto> allUsers = new LinkedHashMap<>(users);
+        Map<Long, CompactExpensesDto.CompactGroupDto> compactGroups = new LinkedHashMap<>();
+        for (GroupDto group : groups.values()) {
+            group.members().forEach(member -> allUsers.putIfAbsent(member.getId(), member));
+            if (group.createdBy() != null) {
+                allUsers.putIfAbsent(group.createdBy().getId(), group.createdBy());
+            }
+            compactGroups.put(group.id(), CompactExpensesDto.CompactGroupDto.fromGroup(group));
+        }
+        return new CompactExpensesDto(expenses, allUsers, compactGroups);
+    }
+
+    private List<ExpenseSplitRow> splitsOf(ExpenseRow row) {
+        return splits.getOrDefault(row.id(), List.of());
+    }
+}
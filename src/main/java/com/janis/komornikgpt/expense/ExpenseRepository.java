@@ -1,5 +1,7 @@
 package com.janis.komornikgpt.expense;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -7,34 +9,113 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ExpenseRepository extends JpaRepository<Expense, Long> {
 
-    @Query("SELECT e FROM Expense e WHERE e.group.id = :groupId AND e.date BETWEEN :startDate AND :endDate")
-    List<Expense> findAllByGroupIdAndDateBetween(
+    @EntityGraph(Expense.DETAILS_GRAPH)
+    Optional<Expense> findWithDetailsById(Long id);
+
+    // Read-only list queries return projections, the entities are loaded on write paths only. Lists are walked by
+    // (date, id) descending (indexes idx_expenses_group_date_id / idx_expenses_payer_date_id), a whole list is the
+    // page after ExpenseCursor.FIRST with an unlimited Limit
+
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.ExpenseRow(e.id, e.description, e.amount, e.currency, e.date,
+                e.payer.id, e.group.id, e.createdAt, e.updatedAt, e.paid, e.category)
+            FROM Expense e
+            WHERE e.group.id = :groupId AND (e.date, e.id) < (:date, :id)
+            ORDER BY e.date DESC, e.id DESC
+            """)
+    List<ExpenseRow> findRowsByGroupIdAfter(@Param("groupId") Long groupId, @Param("date") LocalDateTime date,
+                                            @Param("id") Long id, Limit limit);
+
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.ExpenseRow(e.id, e.description, e.amount, e.currency, e.date,
+                e.payer.id, e.group.id, e.createdAt, e.updatedAt, e.paid, e.category)
+            FROM Expense e
+            WHERE e.payer.id = :userId AND (e.date, e.id) < (:date, :id)
+            ORDER BY e.date DESC, e.id DESC
+            """)
+    List<ExpenseRow> findRowsByPayerIdAfter(@Param("userId") Long userId, @Param("date") LocalDateTime date,
+                                            @Param("id") Long id, Limit limit);
+
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.ExpenseRow(e.id, e.description, e.amount, e.currency, e.date,
+                e.payer.id, e.group.id, e.createdAt, e.updatedAt, e.paid, e.category)
+            FROM Expense e
+            WHERE e.group.id = :groupId AND e.date BETWEEN :startDate AND :endDate
+            ORDER BY e.date DESC, e.id DESC
+            """)
+    List<ExpenseRow> findRowsByGroupIdAndDateBetween(
         @Param("groupId") Long groupId,
         @Param("startDate") LocalDateTime startDate,
         @Param("endDate") LocalDateTime endDate
     );
 
-    List<Expense> findAllByPayerIdOrderByDateDesc(Long userId);
-    
-    @Query("SELECT e FROM Expense e WHERE e.payer.id = :userId AND e.date BETWEEN :startDate AND :endDate")
-    List<Expense> findAllByPayerIdAndDateBetween(
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.ExpenseRow(e.id, e.description, e.amount, e.currency, e.date,
+                e.payer.id, e.group.id, e.createdAt, e.updatedAt, e.paid, e.category)
+            FROM Expense e
+            WHERE e.payer.id = :userId AND e.date BETWEEN :startDate AND :endDate
+            ORDER BY e.date DESC, e.id DESC
+            """)
+    List<ExpenseRow> findRowsByPayerIdAndDateBetween(
         @Param("userId") Long userId,
         @Param("startDate") LocalDateTime startDate,
         @Param("endDate") LocalDateTime endDate
     );
-    
-    List<Expense> findAllByGroupIdOrderByDateDesc(Long groupId);
+
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.ExpenseSplitRow(s.expense.id, s.id, s.user.id, s.amountOwed)
+            FROM ExpenseSplit s
+            WHERE s.expense.id IN :expenseIds
+            ORDER BY s.id
+            """)
+    List<ExpenseSplitRow> findSplitRowsByExpenseIdIn(@Param("expenseIds") Collection<Long> expenseIds);
 
     List<Expense> findAllByGroup_IdAndPaidFalse(Long groupId);
 
     @Query("SELECT SUM(es.amountOwed) FROM ExpenseSplit es WHERE es.user.id = :userId AND es.expense.group.id = :groupId AND es.expense.paid = false")
     BigDecimal sumUnpaidAmountOwedByUserIdAndGroupId(@Param("userId") Long userId, @Param("groupId") Long groupId);
 
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.UserCurrencyTotal(e.payer.id, e.currency, SUM(e.amount))
+            FROM Expense e
+            WHERE e.group.id = :groupId AND e.paid = false AND e.payer IS NOT NULL AND e.amount IS NOT NULL
+            GROUP BY e.payer.id, e.currency
+            """)
+    List<UserCurrencyTotal> sumUnpaidPaidByGroupId(@Param("groupId") Long groupId);
+
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.UserCurrencyTotal(es.user.id, e.currency, SUM(es.amountOwed))
+            FROM ExpenseSplit es JOIN es.expense e
+            WHERE e.group.id = :groupId AND e.paid = false AND es.user IS NOT NULL AND es.amountOwed IS NOT NULL
+            GROUP BY es.user.id, e.currency
+            """)
+    List<UserCurrencyTotal> sumUnpaidOwedByGroupId(@Param("groupId") Long groupId);
+
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.UserCurrencyDayTotal(
+                e.payer.id, e.payer.name, e.currency, CAST(e.date AS LocalDate), SUM(e.amount))
+            FROM Expense e
+            WHERE e.group.id = :groupId AND e.paid = false AND e.payer IS NOT NULL AND e.amount IS NOT NULL
+            GROUP BY e.payer.id, e.payer.name, e.currency, CAST(e.date AS LocalDate)
+            """)
+    List<UserCurrencyDayTotal> sumUnpaidPaidPerDayByGroupId(@Param("groupId") Long groupId);
+
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.UserCurrencyDayTotal(
+                es.user.id, es.user.name, e.currency, CAST(e.date AS LocalDate), SUM(es.amountOwed))
+            FROM ExpenseSplit es JOIN es.expense e
+            WHERE e.group.id = :groupId AND e.paid = false AND es.user IS NOT NULL AND es.amountOwed IS NOT NULL
+            GROUP BY es.user.id, es.user.name, e.currency, CAST(e.date AS LocalDate)
+            """)
+    List<UserCurrencyDayTotal> sumUnpaidOwedPerDayByGroupId(@Param("groupId") Long groupId);
+
     @Query("SELECT COUNT(es.amountOwed) FROM ExpenseSplit es WHERE es.user.id = :userId AND es.expense.group.id = :groupId AND es.expense.paid = false")
     BigDecimal countUnpaidAmountOwedByUserIdAndGroupId(@Param("userId") Long userId, @Param("groupId") Long groupId);
 
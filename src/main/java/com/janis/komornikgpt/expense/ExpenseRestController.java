@@ -1,81 +1,193 @@
 package com.janis.komornikgpt.expense;
 
-import com.janis.komornikgpt.group.GroupDto;
+import com.janis.komornikgpt.config.FieldSelection;
+import com.janis.komornikgpt.config.SparseFieldset;
+import com.janis.komornikgpt.group.GroupETags;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.security.Principal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/expenses")
 @RequiredArgsConstructor
 @Tag(name = "Expense", description = "Endpointy do zarządzania wydatkami w grupach")
 public class ExpenseRestController {
+    public static final String SETTLEMENT_STRATEGY_HEADER = "X-Settlement-Strategy";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+    private static final String COMPACT_DESCRIPTION = "Z parametrem format=compact (lub nagłówkiem Accept: "
+            + ExpenseListFormat.COMPACT_MEDIA_TYPE_VALUE + ") wydatki odwołują się do użytkowników i grup przez id, "
+            + "a każdy użytkownik i grupa występuje raz w słownikach users i groups. Parametr fields (np. "
+            + "fields=description,amount,date,payer) ogranicza pełny format do wybranych pól; pominięte powiązania "
+            + "(splits, payer, group) nie są pobierane z bazy.";
+
     private final ExpenseSettlementService expenseSettlementService;
     private final ExpenseService expenseService;
+    private final ExpenseExportService expenseExportService;
+    private final ExpenseImportService expenseImportService;
+    private final GroupETags groupETags;
 
     @GetMapping("/groups/{groupId}/settlement")
-    @Operation(summary = "Pobierz rozliczenie grupy", description = "Zwraca ostateczne rozliczenie (kto komu ile jest dłużny) dla całej grupy.")
-    public List<SettlementDto> getSettlement(@PathVariable Long groupId,
-                                             @RequestParam(defaultValue = "false") boolean recalculate) {
-        return expenseSettlementService.getSettlementDtos(groupId, recalculate);
+    @Operation(summary = "Pobierz rozliczenie grupy", description = "Zwraca ostateczne rozliczenie (kto komu ile jest dłużny) dla całej grupy. Przy recalculate=true kwoty są przeliczane po kursach z dnia wydatku na walutę z parametru currency (domyślnie walutę domyślną grupy). Nagłówek X-Settlement-Strategy zawiera algorytm, który wyliczył wynik (exact/greedy). Pole stale=true oznacza przeliczenie po ostatnich zapisanych kursach, bo źródła kursów były niedostępne.")
+    public ResponseEntity<List<SettlementDto>> getSettlement(@PathVariable Long groupId,
+                                                             @RequestParam(defaultValue = "false") boolean recalculate,
+                                                             @RequestParam(required = false) Currency currency,
+                                                             WebRequest request) {
+        if (!recalculate) {
+            if (groupETags.checkNotModified(groupId, request)) {
+                return null;
+            }
+            return settlementResponse(expenseSettlementService.getSettlementReport(groupId, false, currency));
+        }
+        // A recalculated report also depends on the rates of the day, and stale rates are never revalidated, so the
+        // report is built first and tagged with the rate date
+        Long version = groupETags.version(groupId);
+        SettlementReport report = expenseSettlementService.getSettlementReport(groupId, true, currency);
+        if (version != null && !report.stale()
+                && groupETags.checkNotModified(groupId, version, LocalDate.now().toString(), request)) {
+            return null;
+        }
+        return settlementResponse(report);
+    }
+
+    private static ResponseEntity<List<SettlementDto>> settlementResponse(SettlementReport report) {
+        return ResponseEntity.ok()
+                .header(SETTLEMENT_STRATEGY_HEADER, report.algorithm().headerValue())
+                .body(report.settlements());
     }
 
     @GetMapping("/group/{groupId}/has-unpaid")
     @Operation(summary = "Sprawdź nieopłacone wydatki", description = "Zwraca true, jeśli w grupie istnieją nieopłacone wydatki.")
-    public ResponseEntity<Boolean> hasUnpaidExpenses(@PathVariable Long groupId) {
+    public ResponseEntity<Boolean> hasUnpaidExpenses(@PathVariable Long groupId, WebRequest request) {
+        if (groupETags.checkNotModified(groupId, request)) {
+            return null;
+        }
         return ResponseEntity.ok(expenseService.hasUnpaidExpenses(groupId));
     }
 
     @PostMapping
     @Operation(summary = "Dodaj wydatek", description = "Aplikuje nowy wydatek dla grupy na podstawie danych i proporcji podziału.")
     public ResponseEntity<ExpenseDto> createExpense(@RequestBody CreateExpenseRequest request, Principal principal) {
-        Expense expense = expenseService.createExpense(request, principal);
-        return ResponseEntity.ok(ExpenseDto.fromExpense(expense));
+        return ResponseEntity.ok(expenseService.createExpense(request, principal));
     }
 
     @GetMapping("/group/{groupId}")
-    @Operation(summary = "Pobierz wszystkie wydatki grupy", description = "Zwraca pełną lub częściową listę zweryfikowanych wydatków z wybranej grupy.")
-    public ResponseEntity<List<ExpenseDto>> getExpensesByGroupId(@PathVariable Long groupId,
-                                                                 @RequestParam(required = false) String viewToken, Principal principal) {
-        List<Expense> expenses = expenseService.findAllByGroupId(groupId, principal, viewToken);
-        return ResponseEntity.ok(expenses.stream().map(ExpenseDto::fromExpense).toList());
+    @SparseFieldset(filter = ExpenseDto.FIELDS_FILTER)
+    @Operation(summary = "Pobierz wszystkie wydatki grupy", description = "Zwraca pełną lub częściową listę zweryfikowanych wydatków z wybranej grupy, od najnowszych. Z parametrem limit (lub cursor) zwraca jedną stronę, a nagłówek X-Next-Cursor zawiera kursor kolejnej strony (brak nagłówka na ostatniej stronie). " + COMPACT_DESCRIPTION)
+    public ResponseEntity<?> getExpensesByGroupId(@PathVariable Long groupId,
+                                                  @RequestParam(required = false) String viewToken,
+                                                  @RequestParam(required = false) Integer limit,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) String format,
+                                                  @RequestParam(required = false) String fields,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                  Principal principal, WebRequest request) {
+        ExpenseListFormat listFormat = ExpenseListFormat.resolve(format, accept);
+        FieldSelection selection = fieldSelection(fields, listFormat);
+        ExpenseCursor start = ExpenseCursor.decode(cursor);
+        expenseService.checkGroupAccess(groupId, principal, viewToken);
+        if (groupETags.checkNotModified(groupId, request)) {
+            return null;
+        }
+        ExpenseListing listing = limit == null && cursor == null
+                ? expenseService.findAllByGroupId(groupId, selection)
+                : expenseService.findPageByGroupId(groupId, start, pageSize(limit), selection);
+        return render(listing, listFormat, ExpenseListing::expenses);
+    }
+
+    @GetMapping("/group/{groupId}/export")
+    @Operation(summary = "Eksportuj historię wydatków grupy", description = "Strumieniuje wszystkie wydatki grupy, od najnowszych, jako plik CSV (format=csv, domyślnie) lub JSON Lines (format=ndjson). Wiersze są wysyłane w trakcie odczytu z bazy, więc pobieranie zaczyna się od razu niezależnie od liczby wydatków. Przy gzip=true plik jest skompresowany (rozszerzenie .gz).")
+    public ResponseEntity<StreamingResponseBody> exportExpensesByGroupId(@PathVariable Long groupId,
+                                                                         @RequestParam(required = false) String viewToken,
+                                                                         @RequestParam(required = false) String format,
+                                                                         @RequestParam(defaultValue = "false") boolean gzip,
+                                                                         Principal principal) {
+        ExpenseExportFormat exportFormat = ExpenseExportFormat.resolve(format);
+        expenseService.checkGroupAccess(groupId, principal, viewToken);
+        String fileName = "wydatki-grupy-" + groupId + "." + exportFormat.extension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : exportFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(out -> expenseExportService.export(groupId, exportFormat, gzip, out));
+    }
+
+    @PostMapping(value = "/group/{groupId}/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Importuj wydatki z CSV", description = "Importuje wydatki grupy z pliku CSV (pole file) w układzie eksportu: wymagane kolumny date, description, amount, payer i splits, opcjonalne currency (domyślnie waluta grupy), category i paid. Płacący i uczestnicy to nazwy użytkowników należących do grupy, podział zapisuje się jako \"anna=10.00; bartek=5.00\" albo \"anna; bartek\" (po równo). Jeśli którykolwiek wiersz jest błędny, nic nie jest importowane, a odpowiedź 400 zawiera listę błędów z numerami linii. Przy dryRun=true plik jest tylko sprawdzany.")
+    public ResponseEntity<ExpenseImportResult> importExpenses(@PathVariable Long groupId,
+                                                              @RequestParam MultipartFile file,
+                                                              @RequestParam(defaultValue = "false") boolean dryRun,
+                                                              Principal principal) throws IOException {
+        expenseService.checkGroupAccess(groupId, principal, null);
+        ExpenseImportResult result = expenseImportService.importCsv(groupId, file, dryRun);
+        return result.rejected() == 0 ? ResponseEntity.ok(result) : ResponseEntity.badRequest().body(result);
     }
 
     @GetMapping("/group/{groupId}/between")
-    @Operation(summary = "Pobierz wydatki z zakresu dat (Grupa)")
-    public ResponseEntity<List<ExpenseDto>> getExpensesByGroupIdAndDateBetween(
+    @SparseFieldset(filter = ExpenseDto.FIELDS_FILTER)
+    @Operation(summary = "Pobierz wydatki z zakresu dat (Grupa)", description = COMPACT_DESCRIPTION)
+    public ResponseEntity<?> getExpensesByGroupIdAndDateBetween(
             @PathVariable Long groupId,
             @RequestParam LocalDateTime startDate,
-            @RequestParam LocalDateTime endDate) {
-        List<Expense> expenses = expenseService.findAllByGroupIdAndDateBetween(groupId, startDate, endDate);
-        return ResponseEntity.ok(expenses.stream().map(ExpenseDto::fromExpense).toList());
+            @RequestParam LocalDateTime endDate,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request) {
+        ExpenseListFormat listFormat = ExpenseListFormat.resolve(format, accept);
+        FieldSelection selection = fieldSelection(fields, listFormat);
+        if (groupETags.checkNotModified(groupId, request)) {
+            return null;
+        }
+        return render(expenseService.findAllByGroupIdAndDateBetween(groupId, startDate, endDate, selection),
+                listFormat, ExpenseListing::expenses);
     }
 
     @GetMapping("/user/{userId}")
-    @Operation(summary = "Pobierz wydatki użytkownika", description = "Zwraca pogrupowaną listę wydatków dla danego użytkownika z różnych grup.")
-    public ResponseEntity<List<GroupExpensesDto>> getExpensesByPayerId(@PathVariable Long userId) {
-        Map<GroupDto, List<ExpenseDto>> allExpenses = expenseService.findAllByPayerId(userId);
-        List<GroupExpensesDto> result = new ArrayList<>();
-        allExpenses.forEach((groupDto, expenses) -> result.add(new GroupExpensesDto(groupDto, expenses)));
-        return ResponseEntity.ok(result);
+    @SparseFieldset(filter = ExpenseDto.FIELDS_FILTER)
+    @Operation(summary = "Pobierz wydatki użytkownika", description = "Zwraca pogrupowaną listę wydatków dla danego użytkownika z różnych grup. Z parametrem limit (lub cursor) zwraca jedną stronę najnowszych wydatków, a nagłówek X-Next-Cursor zawiera kursor kolejnej strony. " + COMPACT_DESCRIPTION)
+    public ResponseEntity<?> getExpensesByPayerId(@PathVariable Long userId,
+                                                  @RequestParam(required = false) Integer limit,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) String format,
+                                                  @RequestParam(required = false) String fields,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        ExpenseListFormat listFormat = ExpenseListFormat.resolve(format, accept);
+        FieldSelection selection = fieldSelection(fields, listFormat);
+        ExpenseListing listing = limit == null && cursor == null
+                ? expenseService.findAllByPayerId(userId, selection)
+                : expenseService.findPageByPayerId(userId, ExpenseCursor.decode(cursor), pageSize(limit), selection);
+        return render(listing, listFormat, ExpenseListing::byGroup);
     }
 
     @GetMapping("/user/{userId}/between")
-    @Operation(summary = "Pobierz wydatki z zakresu dat (Użytkownik)")
-    public ResponseEntity<List<ExpenseDto>> getExpensesByPayerIdAndDateBetween(
+    @SparseFieldset(filter = ExpenseDto.FIELDS_FILTER)
+    @Operation(summary = "Pobierz wydatki z zakresu dat (Użytkownik)", description = COMPACT_DESCRIPTION)
+    public ResponseEntity<?> getExpensesByPayerIdAndDateBetween(
             @PathVariable Long userId,
             @RequestParam LocalDateTime startDate,
-            @RequestParam LocalDateTime endDate) {
-        List<Expense> expenses = expenseService.findAllByPayerIdAndDateBetween(userId, startDate, endDate);
-        return ResponseEntity.ok(expenses.stream().map(ExpenseDto::fromExpense).toList());
+            @RequestParam LocalDateTime endDate,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        ExpenseListFormat listFormat = ExpenseListFormat.resolve(format, accept);
+        return render(expenseService.findAllByPayerIdAndDateBetween(userId, startDate, endDate,
+                fieldSelection(fields, listFormat)), listFormat, ExpenseListing::expenses);
     }
 
     @PutMapping("/{id}")
@@ -84,8 +196,7 @@ public class ExpenseRestController {
             @PathVariable Long id,
             @RequestBody UpdateExpenseRequest request,
             Principal principal) {
-        Expense expense = expenseService.updateExpense(id, request, principal);
-        return ResponseEntity.ok(ExpenseDto.fromExpense(expense));
+        return ResponseEntity.ok(expenseService.updateExpense(id, request, principal));
     }
 
     @DeleteMapping("/{id}")
@@ -98,8 +209,7 @@ public class ExpenseRestController {
     @GetMapping("/recalculate/{id}")
     @Operation(summary = "Przelicz ponownie", description = "Wymuś przeliczenie splits ze względu na kursy walut itp.")
     public ResponseEntity<ExpenseDto> recalculateExpense(@PathVariable Long id) {
-        Expense expense = expenseService.recalculateExpenses(id);
-        return ResponseEntity.ok(ExpenseDto.fromExpense(expense));
+        return ResponseEntity.ok(expenseService.recalculateExpenses(id));
     }
 
     @PostMapping("/groups/{groupId}/settle")
@@ -111,7 +221,39 @@ public class ExpenseRestController {
 
     @GetMapping("/groups/{groupId}/user/{userId}/can-be-deleted")
     @Operation(summary = "Sprawdź możliwość usunięcia", description = "Zwraca informacje czy dany użytkownik może opuścić daną grupę (brak zaległości).")
-    public ResponseEntity<Boolean> canUserBeDeletedFromGroup(@PathVariable Long userId, @PathVariable Long groupId) {
+    public ResponseEntity<Boolean> canUserBeDeletedFromGroup(@PathVariable Long userId, @PathVariable Long groupId,
+                                                             WebRequest request) {
+        if (groupETags.checkNotModified(groupId, request)) {
+            return null;
+        }
         return ResponseEntity.ok(expenseService.canUserBeDeletedFromGroup(userId, groupId));
     }
+
+    private static int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Parametr limit musi być dodatni");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    // The compact format has its own shape, fields applies to the full ExpenseDto only
+    private static FieldSelection fieldSelection(String fields, ExpenseListFormat format) {
+        FieldSelection selection = FieldSelection.parse(fields, ExpenseDto.FIELDS);
+        return format == ExpenseListFormat.COMPACT ? FieldSelection.ALL : selection;
+    }
+
+    private static ResponseEntity<?> render(ExpenseListing listing, ExpenseListFormat format,
+                                            Function<ExpenseListing, ?> full) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (listing.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, listing.nextCursor());
+        }
+        if (format == ExpenseListFormat.COMPACT) {
+            return response.contentType(ExpenseListFormat.COMPACT_MEDIA_TYPE).body(listing.compact());
+        }
+        return response.body(full.apply(listing));
+    }
 }
@@ -0,0 +1,23 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of an expense for list endpoints, with the payer and group as ids. Splits are fetched
+ * separately as {@link ExpenseSplitRow}s.
+ */
+public record ExpenseRow(
+        Long id,
+        String description,
+        BigDecimal amount,
+        Currency currency,
+        LocalDateTime date,
+        Long payerId,
+        Long groupId,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        Boolean paid,
+        ExpenseCategory category
+) {
+}
@@ -1,24 +1,32 @@
 package com.janis.komornikgpt.expense;
 
+import com.janis.komornikgpt.config.FieldSelection;
+import com.janis.komornikgpt.exception.GroupNotFoundException;
 import com.janis.komornikgpt.exception.ResourceNotFoundException;
-import com.janis.komornikgpt.group.Group;
 import com.janis.komornikgpt.group.GroupDto;
 import com.janis.komornikgpt.group.GroupRepository;
 import com.janis.komornikgpt.group.GroupService;
 import com.janis.komornikgpt.user.User;
+import com.janis.komornikgpt.user.UserDto;
 import com.janis.komornikgpt.user.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.security.Principal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -29,39 +37,62 @@ public class ExpenseService {
     private final GroupRepository groupRepository;
     private final GroupService groupService;
     private final NBPExchangeService nbpExchangeService;
+    private final GroupBalanceService groupBalanceService;
 
     @Transactional
-    public Expense createExpense(CreateExpenseRequest request, Principal principal) {
-        // Check if user is member of the group
-        if (!groupService.isUserMemberOfGroup(principal.getName(), request.groupId())) {
-            throw new AccessDeniedException("You are not a member of this group");
-        }
-
-        User payer = userRepository.findById(request.payerId())
-                .orElseThrow(
-                        () -> new RuntimeException("User not found with id: " + request.payerId()));
-        Group group = groupRepository.findById(request.groupId())
-                .orElseThrow(
-                        () -> new RuntimeException("Group not found with id: " + request.groupId()));
-
+    public ExpenseDto createExpense(CreateExpenseRequest request, Principal principal) {
+        Map<Long, User> participants = participants(request.groupId(), principal, request.payerId(), request);
         Expense expense = new Expense();
         expense.setDescription(request.description());
         expense.setAmount(request.amount());
         expense.setCurrency(request.currency());
         expense.setDate(request.date());
-        expense.setPayer(payer);
+        expense.setPayer(participants.get(request.payerId()));
         expense.setCategory(request.category());
-        expense.setGroup(group);
-        assignSplits(request, expense);
+        expense.setGroup(groupRepository.getReferenceById(request.groupId()));
+        assignSplits(request, expense, participants);
 
-        return expenseRepository.save(expense);
+        Expense saved = expenseRepository.save(expense);
+        groupBalanceService.addExpense(saved);
+        groupRepository.bumpDataVersion(saved.getGroup().getId());
+        return ExpenseDto.fromExpense(saved);
     }
 
-    private void assignSplits(SplitContainer request, Expense expense) {
+    /**
+     * Checks that the caller is a member of the group and loads the payer and split users with one query, whatever
+     * the number of splits and members.
+     *
+     * @throws AccessDeniedException    when the caller is not a member of the group
+     * @throws IllegalArgumentException when a participant is missing or not a member of the group
+     */
+    private Map<Long, User> participants(Long groupId, Principal principal, Long payerId, SplitContainer request) {
+        Set<Long> ids = new LinkedHashSet<>();
+        ids.add(payerId);
+        request.splits().forEach(split -> ids.add(split.userId()));
+        if (ids.contains(null)) {
+            throw new IllegalArgumentException("Brak id płacącego lub uczestnika podziału");
+        }
+        List<User> found = userRepository.findGroupMembers(groupId, principal.getName(), ids);
+        if (found.stream().noneMatch(user -> user.getUsername().equals(principal.getName()))) {
+            // Only a rejected request pays for telling a missing group from a non-member
+            if (!groupRepository.existsById(groupId)) {
+                throw new GroupNotFoundException("Group not found with id: " + groupId);
+            }
+            throw new AccessDeniedException("You are not a member of this group");
+        }
+        Map<Long, User> members = new HashMap<>();
+        found.stream().filter(user -> ids.contains(user.getId())).forEach(user -> members.put(user.getId(), user));
+        if (members.size() < ids.size()) {
+            List<Long> outsiders = ids.stream().filter(id -> !members.containsKey(id)).toList();
+            throw new IllegalArgumentException("Użytkownicy " + outsiders + " nie należą do grupy " + groupId);
+        }
+        return members;
+    }
+
+    private void assignSplits(SplitContainer request, Expense expense, Map<Long, User> participants) {
         request.splits().forEach(splitDto -> {
             ExpenseSplit split = new ExpenseSplit();
-            split.setUser(userRepository.findById(splitDto.userId())
-                    .orElseThrow(() -> new RuntimeException("User not found with id: " + splitDto.userId())));
+            split.setUser(participants.get(splitDto.userId()));
             split.setAmountOwed(splitDto.amountOwed());
             split.setExpense(expense);
             expense.getSplits().add(split);
@@ -78,56 +109,146 @@ public class ExpenseService {
             throw new AccessDeniedException("You are not a member of this group");
         }
 
+        groupBalanceService.removeExpense(expense);
         expenseRepository.delete(expense);
+        groupRepository.bumpDataVersion(expense.getGroup().getId());
+    }
+
+    // Splits of at most this many expenses are read with one query
+    private static final int SPLIT_BATCH_SIZE = 1000;
+
+    /**
+     * Read methods select {@link ExpenseRow} projections, their splits in batches and the referenced users and
+     * groups once; managed entities are loaded on write paths only. The returned {@link ExpenseListing} holds DTOs
+     * and rows only, so it is rendered outside the transaction. Splits, users and groups are not queried when
+     * {@code fields} leaves out the expense fields that need them.
+     * <p>
+     * Group lists do not check access themselves: the controller calls {@link #checkGroupAccess} first, so a
+     * conditional GET can be answered between the check and the read.
+     */
+    @Transactional(readOnly = true)
+    public ExpenseListing findAllByGroupId(Long groupId, FieldSelection fields) {
+        return listing(expenseRepository.findRowsByGroupIdAfter(
+                groupId, ExpenseCursor.FIRST.date(), ExpenseCursor.FIRST.id(), Limit.unlimited()), null, fields);
     }
 
-    public List<Expense> findAllByGroupId(Long groupId, Principal principal, String viewToken) {
+    /**
+     * Returns up to {@code limit} expenses of the group following the cursor.
+     */
+    @Transactional(readOnly = true)
+    public ExpenseListing findPageByGroupId(Long groupId, ExpenseCursor cursor, int limit, FieldSelection fields) {
+        return pageOf(expenseRepository.findRowsByGroupIdAfter(
+                groupId, cursor.date(), cursor.id(), Limit.of(limit + 1)), limit, fields);
+    }
+
+    /**
+     * @throws AccessDeniedException when the view token is invalid or the user is not a member of the group
+     */
+    @Transactional(readOnly = true)
+    public void checkGroupAccess(Long groupId, Principal principal, String viewToken) {
         // If viewToken is provided, validate it for public access
         if (viewToken != null && !viewToken.trim().isEmpty()) {
             if (!groupService.checkViewToken(groupId, viewToken)) {
                 throw new AccessDeniedException("Invalid view token");
             }
             // Valid token allows access without membership check
-            return expenseRepository.findAllByGroupIdOrderByDateDesc(groupId);
+            return;
         }
 
         // If no viewToken, check if user is member of the group
         if (principal == null || !groupService.isUserMemberOfGroup(principal.getName(), groupId)) {
             throw new AccessDeniedException("You are not a member of this group");
         }
+    }
 
-        return expenseRepository.findAllByGroupIdOrderByDateDesc(groupId);
+    @Transactional(readOnly = true)
+    public ExpenseListing findAllByGroupIdAndDateBetween(Long groupId, LocalDateTime startDate,
+                                                         LocalDateTime endDate, FieldSelection fields) {
+        return listing(expenseRepository.findRowsByGroupIdAndDateBetween(groupId, startDate, endDate), null, fields);
     }
 
-    public List<Expense> findAllByGroupIdAndDateBetween(Long groupId, LocalDateTime startDate,
-                                                        LocalDateTime endDate) {
-        return expenseRepository.findAllByGroupIdAndDateBetween(groupId, startDate, endDate);
+    /**
+     * Returns all expenses paid by the user; {@link ExpenseListing#byGroup()} groups them by group, so groups are
+     * loaded whatever the {@code fields}.
+     */
+    @Transactional(readOnly = true)
+    public ExpenseListing findAllByPayerId(Long userId, FieldSelection fields) {
+        return listing(expenseRepository.findRowsByPayerIdAfter(
+                userId, ExpenseCursor.FIRST.date(), ExpenseCursor.FIRST.id(), Limit.unlimited()), null,
+                fields.including("group"));
     }
 
-    public Map<GroupDto, List<ExpenseDto>> findAllByPayerId(Long userId) {
-        Map<Group, List<Expense>> expenses = expenseRepository.findAllByPayerIdOrderByDateDesc(userId).stream()
-                .filter(e -> e.getGroup() != null)
-                .collect(Collectors.groupingBy(Expense::getGroup));
-        return expenses.entrySet().stream()
-                .collect(Collectors.toMap(
-                        entry -> GroupDto.fromGroup(entry.getKey()), // konwersja Group -> GroupDto
-                        entry -> entry.getValue().stream()
-                                .map(ExpenseDto::fromExpense)
-                                .toList()
-                ));
+    /**
+     * Returns up to {@code limit} expenses paid by the user following the cursor.
+     */
+    @Transactional(readOnly = true)
+    public ExpenseListing findPageByPayerId(Long userId, ExpenseCursor cursor, int limit, FieldSelection fields) {
+        return pageOf(expenseRepository.findRowsByPayerIdAfter(
+                userId, cursor.date(), cursor.id(), Limit.of(limit + 1)), limit, fields.including("group"));
     }
 
-    public List<Expense> findAllByPayerIdAndDateBetween(Long userId, LocalDateTime startDate,
-                                                        LocalDateTime endDate) {
-        return expenseRepository.findAllByPayerIdAndDateBetween(userId, startDate, endDate);
+    @Transactional(readOnly = true)
+    public ExpenseListing findAllByPayerIdAndDateBetween(Long userId, LocalDateTime startDate,
+                                                         LocalDateTime endDate, FieldSelection fields) {
+        return listing(expenseRepository.findRowsByPayerIdAndDateBetween(userId, startDate, endDate), null, fields);
     }
 
-    public Expense recalculateExpenses(Long id) {
-        Expense expense = expenseRepository.findById(id)
+    // One row more than the page size is selected to know whether another page exists
+    private ExpenseListing pageOf(List<ExpenseRow> rows, int limit, FieldSelection fields) {
+        if (rows.size() <= limit) {
+            return listing(rows, null, fields);
+        }
+        List<ExpenseRow> page = rows.subList(0, limit);
+        return listing(page, ExpenseCursor.after(page.getLast()).encode(), fields);
+    }
+
+    private ExpenseListing listing(List<ExpenseRow> rows, String nextCursor, FieldSelection fields) {
+        if (rows.isEmpty()) {
+            return ExpenseListing.EMPTY;
+        }
+        List<Long> expenseIds = new ArrayList<>(rows.size());
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> groupIds = new HashSet<>();
+        for (ExpenseRow row : rows) {
+            expenseIds.add(row.id());
+            if (fields.includes("payer")) {
+                userIds.add(row.payerId());
+            }
+            if (fields.includes("group")) {
+                groupIds.add(row.groupId());
+            }
+        }
+
+        Map<Long, List<ExpenseSplitRow>> splitsByExpense = new HashMap<>();
+        for (int from = 0; fields.includes("splits") && from < expenseIds.size(); from += SPLIT_BATCH_SIZE) {
+            List<Long> batch = expenseIds.subList(from, Math.min(from + SPLIT_BATCH_SIZE, expenseIds.size()));
+            for (ExpenseSplitRow split : expenseRepository.findSplitRowsByExpenseIdIn(batch)) {
+                splitsByExpense.computeIfAbsent(split.expenseId(), id -> new ArrayList<>()).add(split);
+                userIds.add(split.userId());
+            }
+        }
+        userIds.remove(null);
+        groupIds.remove(null);
+
+        Map<Long, UserDto> users = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            userRepository.findDtosByIdIn(userIds).forEach(user -> users.put(user.getId(), user));
+        }
+        Map<Long, GroupDto> groups = new HashMap<>();
+        if (!groupIds.isEmpty()) {
+            groupRepository.findAllWithMembersByIdIn(groupIds).forEach(group -> groups.put(group.getId(), GroupDto.fromGroup(group)));
+        }
+        return new ExpenseListing(rows, splitsByExpense, users, groups, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public ExpenseDto recalculateExpenses(Long id) {
+        Expense expense = expenseRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Expense not found"));
         Expense newExpense = new Expense();
-        BigDecimal expenseAmount = nbpExchangeService.convertToPln(expense.getAmount(),
-                expense.getCurrency());
+        LocalDate date = expense.getDate() != null ? expense.getDate().toLocalDate() : null;
+        DatedRates rates = nbpExchangeService.rates(Map.of(expense.getCurrency(), Collections.singleton(date)));
+        BigDecimal expenseAmount = rates.toPln(expense.getAmount(), expense.getCurrency(), date);
         newExpense.setAmount(expenseAmount);
         newExpense.setCurrency(expense.getCurrency());
         newExpense.setDescription(expense.getDescription());
@@ -137,15 +258,14 @@ public class ExpenseService {
         newExpense.setGroup(expense.getGroup());
         List<ExpenseSplit> splits = new ArrayList<>();
         expense.getSplits().forEach(split -> {
-            BigDecimal splitAmount = nbpExchangeService.convertToPln(split.getAmountOwed(),
-                    expense.getCurrency());
+            BigDecimal splitAmount = rates.toPln(split.getAmountOwed(), expense.getCurrency(), date);
             ExpenseSplit newSplit = new ExpenseSplit();
             newSplit.setUser(split.getUser());
             newSplit.setAmountOwed(splitAmount);
             splits.add(newSplit);
         });
         newExpense.setSplits(splits);
-        return newExpense;
+        return ExpenseDto.fromExpense(newExpense);
     }
 
     public boolean hasUnpaidExpenses(Long groupId) {
@@ -153,14 +273,12 @@ public class ExpenseService {
     }
 
     @Transactional
-    public Expense updateExpense(Long id, UpdateExpenseRequest request, Principal principal) {
+    public ExpenseDto updateExpense(Long id, UpdateExpenseRequest request, Principal principal) {
         Expense expense = expenseRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Expense not found"));
 
-        // Check if user is member of the group
-        if (!groupService.isUserMemberOfGroup(principal.getName(), expense.getGroup().getId())) {
-            throw new AccessDeniedException("You are not a member of this group");
-        }
+        Map<Long, User> participants = participants(expense.getGroup().getId(), principal, request.payerId(), request);
+        groupBalanceService.removeExpense(expense);
 
         // Update expense fields
         expense.setDescription(request.description());
@@ -168,15 +286,16 @@ public class ExpenseService {
         expense.setCurrency(request.currency());
         expense.setDate(request.date());
         expense.setCategory(request.category());
-        expense.setPayer(userRepository.findById(request.payerId())
-                .orElseThrow(
-                        () -> new RuntimeException("User not found with id: " + request.payerId())));
+        expense.setPayer(participants.get(request.payerId()));
 
         // Update splits
         expense.getSplits().clear();
-        assignSplits(request, expense);
+        assignSplits(request, expense, participants);
 
-        return expenseRepository.save(expense);
+        Expense saved = expenseRepository.save(expense);
+        groupBalanceService.addExpense(saved);
+        groupRepository.bumpDataVersion(saved.getGroup().getId());
+        return ExpenseDto.fromExpense(saved);
     }
 
     public boolean canUserBeDeletedFromGroup(Long userId, Long groupId) {
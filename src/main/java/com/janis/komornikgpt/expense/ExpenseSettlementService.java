@@ -1,14 +1,13 @@
 package com.janis.komornikgpt.expense;
 
+import com.janis.komornikgpt.group.GroupRepository;
 import com.janis.komornikgpt.user.User;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -16,146 +15,121 @@ public class ExpenseSettlementService {
 
     private final ExpenseRepository expenseRepository;
     private final NBPExchangeService nbpExchangeService;
+    private final GroupBalanceService groupBalanceService;
+    private final SettlementStrategy settlementStrategy;
+    private final SettlementCache settlementCache;
+    private final GroupRepository groupRepository;
 
     public List<SettlementDto> getSettlementDtos(Long groupId, boolean recalculate) {
-        return processSettlementsForGroup(groupId, recalculate).stream()
-                .map(s -> new SettlementDto(s.from().getName(), s.to().getName(), s.amount(), s.currency()))
-                .toList();
+        return getSettlementReport(groupId, recalculate, null).settlements();
     }
 
-    public List<Settlement> processSettlementsForGroup(Long groupId, boolean recalculate) {
-
-        List<Expense> expenses = expenseRepository.findAllByGroup_IdAndPaidFalse(groupId);
-        Map<Currency, List<Expense>> expensesByCurrency = expenses.stream()
-                .collect(Collectors.groupingBy(Expense::getCurrency));
-
-        List<Settlement> allSettlements = new ArrayList<>();
-
-        for (Map.Entry<Currency, List<Expense>> entry : expensesByCurrency.entrySet()) {
-            Currency currency = entry.getKey();
-            List<Expense> currencyExpenses = entry.getValue();
-
-            List<Settlement> settlements = settlePerCurrency(currencyExpenses, currency);
-            allSettlements.addAll(settlements);
-        }
-        if (recalculate) {
-            Map<String, Settlement> plnMap = new HashMap<>();
-
-            for (Settlement settlement : allSettlements) {
-                if (settlement.currency() == Currency.PLN) {
-                    String key = settlement.from().getId() + "->" + settlement.to().getId();
-                    plnMap.put(key, settlement);
-                }
-            }
-
-            for (Settlement settlement : allSettlements) {
-                if (settlement.currency() != Currency.PLN) {
-                    BigDecimal convertedAmount = nbpExchangeService.convertToPln(settlement.amount(), settlement.currency());
-                    String key = settlement.from().getId() + "->" + settlement.to().getId();
-
-                    if (plnMap.containsKey(key)) {
-                        Settlement updated = plnMap.get(key).withAddedPLNAmount(convertedAmount);
-                        plnMap.put(key, updated);
-                    } else {
-                        Settlement newPln = new Settlement(settlement.from(), settlement.to(), convertedAmount, Currency.PLN);
-                        plnMap.put(key, newPln);
-                    }
-                }
-            }
-
-            return simplifySettlements(new ArrayList<>(plnMap.values()));
-        }
-
-        return allSettlements;
+    /**
+     * @param currency currency of a recalculated settlement; the default currency of the group when {@code null}
+     */
+    public SettlementReport getSettlementReport(Long groupId, boolean recalculate, Currency currency) {
+        Long version = groupRepository.findDataVersion(groupId);
+        Currency target = recalculate ? targetCurrency(groupId, currency) : null;
+        return settlementCache.get(groupId, target, version, () -> computeSettlementReport(groupId, target));
     }
 
-    private List<Settlement> settlePerCurrency(List<Expense> expenses, Currency currency) {
-        Map<User, BigDecimal> balances = new HashMap<>();
+    private SettlementReport computeSettlementReport(Long groupId, Currency target) {
+        SettlementResult result = settle(groupId, target);
+        List<SettlementDto> dtos = result.settlements().stream()
+                .map(s -> new SettlementDto(s.from().getName(), s.to().getName(), s.amount(), s.currency(), result.stale()))
+                .toList();
+        return new SettlementReport(dtos, result.algorithm(), result.stale());
+    }
 
-        for (Expense expense : expenses) {
-            User payer = expense.getPayer();
-            BigDecimal amount = expense.getAmount();
+    public List<Settlement> processSettlementsForGroup(Long groupId, boolean recalculate) {
+        return settle(groupId, recalculate ? targetCurrency(groupId, null) : null).settlements();
+    }
 
-            balances.merge(payer, amount, BigDecimal::add);
+    private Currency targetCurrency(Long groupId, Currency currency) {
+        return currency != null ? currency : groupRepository.findDefaultCurrency(groupId).orElse(Currency.PLN);
+    }
 
-            for (ExpenseSplit split : expense.getSplits()) {
-                User participant = split.getUser();
-                BigDecimal share = split.getAmountOwed();
-                balances.merge(participant, share.negate(), BigDecimal::add);
-            }
+    /**
+     * @param target currency to convert everything into, or {@code null} to settle every currency separately
+     */
+    private SettlementResult settle(Long groupId, Currency target) {
+        if (target != null) {
+            return settleIn(groupId, target);
         }
 
-        return minimizeTransfers(balances, currency);
+        Map<Currency, BalanceSheet> sheets = new EnumMap<>(Currency.class);
+        // Settlements only need the id and display name of a member
+        Map<Long, User> members = new HashMap<>();
+        for (MemberBalance balance : groupBalanceService.findBalances(groupId)) {
+            User member = members.computeIfAbsent(balance.userId(),
+                    id -> User.builder().id(id).name(balance.userName()).build());
+            sheets.computeIfAbsent(balance.currency(), BalanceSheet::new).add(member, balance.amount());
+        }
+        return settle(sheets);
     }
 
-    public List<Settlement> simplifySettlements(List<Settlement> settlements) {
-        Map<Currency, Map<User, BigDecimal>> balancesPerCurrency = new HashMap<>();
-
-        for (Settlement settlement : settlements) {
-            Currency currency = settlement.currency();
-            balancesPerCurrency.putIfAbsent(currency, new HashMap<>());
-
-            Map<User, BigDecimal> balances = balancesPerCurrency.get(currency);
-
-            balances.put(settlement.from(),
-                    balances.getOrDefault(settlement.from(), BigDecimal.ZERO).subtract(settlement.amount()));
-
-            balances.put(settlement.to(),
-                    balances.getOrDefault(settlement.to(), BigDecimal.ZERO).add(settlement.amount()));
+    /**
+     * Converts every expense at the rate of its own date. Balances are netted per currency and day first, so each
+     * (currency, day) pair needs a single conversion, and the cross rates of a day are computed once for all
+     * currencies.
+     */
+    private SettlementResult settleIn(Long groupId, Currency target) {
+        Map<Currency, Map<LocalDate, BalanceSheet>> sheets = new EnumMap<>(Currency.class);
+        Map<Long, User> members = new HashMap<>();
+        for (UserCurrencyDayTotal paid : expenseRepository.sumUnpaidPaidPerDayByGroupId(groupId)) {
+            daySheet(sheets, paid).add(member(members, paid), paid.amount());
+        }
+        for (UserCurrencyDayTotal owed : expenseRepository.sumUnpaidOwedPerDayByGroupId(groupId)) {
+            daySheet(sheets, owed).add(member(members, owed), owed.amount().negate());
         }
 
-        List<Settlement> minimized = new ArrayList<>();
-        for (var entry : balancesPerCurrency.entrySet()) {
-            Currency currency = entry.getKey();
-            Map<User, BigDecimal> balances = entry.getValue();
-
-            minimized.addAll(minimizeTransfers(balances, currency));
+        // Cross rates need the PLN rate of the target currency on every day as well
+        Map<Currency, Set<LocalDate>> dates = new EnumMap<>(Currency.class);
+        sheets.forEach((currency, days) -> dates.computeIfAbsent(currency, c -> new HashSet<>()).addAll(days.keySet()));
+        if (target != Currency.PLN) {
+            Set<LocalDate> targetDays = dates.computeIfAbsent(target, c -> new HashSet<>());
+            sheets.values().forEach(days -> targetDays.addAll(days.keySet()));
         }
+        DatedRates rates = nbpExchangeService.rates(dates);
 
-        return minimized;
+        Map<LocalDate, CrossRateMatrix> crossRates = new HashMap<>();
+        BalanceSheet converted = new BalanceSheet(target);
+        sheets.forEach((currency, days) -> days.forEach((day, sheet) ->
+                sheet.convertInto(converted, crossRates.computeIfAbsent(day, rates::crossRates))));
+        return settle(Map.of(target, converted)).withStale(rates.stale());
     }
 
-    private List<Settlement> minimizeTransfers(Map<User, BigDecimal> balances, Currency currency) {
-        List<Settlement> settlements = new ArrayList<>();
-
-        PriorityQueue<Map.Entry<User, BigDecimal>> debtors = new PriorityQueue<>(Map.Entry.comparingByValue());
-        PriorityQueue<Map.Entry<User, BigDecimal>> creditors = new PriorityQueue<>((a, b) -> b.getValue().compareTo(a.getValue()));
-
-        for (Map.Entry<User, BigDecimal> entry : balances.entrySet()) {
-            BigDecimal value = entry.getValue().setScale(2, RoundingMode.HALF_UP);
-            if (value.compareTo(BigDecimal.ZERO) < 0) {
-                debtors.add(Map.entry(entry.getKey(), value.abs()));
-            } else if (value.compareTo(BigDecimal.ZERO) > 0) {
-                creditors.add(Map.entry(entry.getKey(), value));
-            }
-        }
+    private static BalanceSheet daySheet(Map<Currency, Map<LocalDate, BalanceSheet>> sheets, UserCurrencyDayTotal total) {
+        return sheets.computeIfAbsent(total.currency(), c -> new HashMap<>())
+                .computeIfAbsent(total.day(), d -> new BalanceSheet(total.currency()));
+    }
 
-        while (!debtors.isEmpty() && !creditors.isEmpty()) {
-            var debtor = debtors.poll();
-            var creditor = creditors.poll();
+    private static User member(Map<Long, User> members, UserCurrencyDayTotal total) {
+        return members.computeIfAbsent(total.userId(), id -> User.builder().id(id).name(total.userName()).build());
+    }
 
-            BigDecimal min = debtor.getValue().min(creditor.getValue());
+    public List<Settlement> simplifySettlements(List<Settlement> settlements) {
+        return simplify(settlements).settlements();
+    }
 
-            settlements.add(new Settlement(
-                    debtor.getKey(),
-                    creditor.getKey(),
-                    min,
-                    currency
-            ));
+    private SettlementResult simplify(List<Settlement> settlements) {
+        Map<Currency, BalanceSheet> sheets = new EnumMap<>(Currency.class);
 
-            BigDecimal debtorRemaining = debtor.getValue().subtract(min);
-            BigDecimal creditorRemaining = creditor.getValue().subtract(min);
+        for (Settlement settlement : settlements) {
+            BalanceSheet sheet = sheets.computeIfAbsent(settlement.currency(), BalanceSheet::new);
+            sheet.add(settlement.from(), settlement.amount().negate());
+            sheet.add(settlement.to(), settlement.amount());
+        }
 
-            if (debtorRemaining.compareTo(BigDecimal.ZERO) > 0) {
-                debtors.add(Map.entry(debtor.getKey(), debtorRemaining));
-            }
+        return settle(sheets);
+    }
 
-            if (creditorRemaining.compareTo(BigDecimal.ZERO) > 0) {
-                creditors.add(Map.entry(creditor.getKey(), creditorRemaining));
-            }
+    private SettlementResult settle(Map<Currency, BalanceSheet> sheets) {
+        SettlementResult result = new SettlementResult(List.of(), SettlementAlgorithm.EXACT);
+        for (BalanceSheet sheet : sheets.values()) {
+            result = result.combine(sheet.toSettlements(settlementStrategy.settle(sheet.balances())));
         }
-
-        return settlements;
+        return result;
     }
 
     @Transactional
@@ -164,6 +138,8 @@ public class ExpenseSettlementService {
         allUnpaidExpenses.forEach(expense -> expense.setPaid(true));
 
         expenseRepository.saveAll(allUnpaidExpenses);
+        groupBalanceService.clearGroup(groupId);
+        groupRepository.bumpDataVersion(groupId);
     }
 
 }
@@ -20,7 +20,8 @@ import java.util.Objects;
 public class ExpenseSplit {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "expense_splits_id_seq")
+    @SequenceGenerator(name = "expense_splits_id_seq", sequenceName = "expense_splits_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
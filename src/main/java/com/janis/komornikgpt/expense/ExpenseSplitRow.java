@@ -0,0 +1,9 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only projection of an expense split for list endpoints.
+ */
+public record ExpenseSplitRow(Long expenseId, Long id, Long userId, BigDecimal amountOwed) {
+}
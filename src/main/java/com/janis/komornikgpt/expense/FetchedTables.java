@@ -0,0 +1,11 @@
+package com.janis.komornikgpt.expense;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Rates returned by an {@link ExchangeRateProvider}. Every table published up to {@code coveredUntil} is included,
+ * so a day up to that date without a rate had no table; later days are unknown to the provider.
+ */
+public record FetchedTables(List<ExchangeRate> rates, LocalDate coveredUntil) {
+}
@@ -0,0 +1,83 @@
+package com.janis.komornikgpt.expense;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Rates from a local CSV snapshot ({@code currency,date,rate} per line, PLN per unit), e.g. an export of the
+ * {@code exchange_rate} table. Used offline and as a secondary source after NBP. Days after the last table of the
+ * snapshot are reported as not covered.
+ */
+@Log4j2
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "exchange-rate.file.path")
+public class FileExchangeRateProvider implements ExchangeRateProvider {
+
+    private final NavigableMap<LocalDate, List<ExchangeRate>> tables = new TreeMap<>();
+
+    public FileExchangeRateProvider(@Value("${exchange-rate.file.path}") Path path) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Nie można odczytać pliku kursów walut " + path, e);
+        }
+        int loaded = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#") || (i == 0 && line.startsWith("currency"))) {
+                continue;
+            }
+            String[] columns = line.split(",");
+            Currency currency = columns.length == 3 ? Currency.fromCode(columns[0].strip()) : null;
+            if (currency == null) {
+                log.warn("Pominięto wiersz {} pliku kursów walut {}: {}", i + 1, path, line);
+                continue;
+            }
+            LocalDate date = LocalDate.parse(columns[1].strip());
+            tables.computeIfAbsent(date, d -> new ArrayList<>())
+                    .add(ExchangeRate.of(currency, date, new BigDecimal(columns[2].strip())));
+            loaded++;
+        }
+        log.info("Wczytano {} kursów walut z pliku {}", loaded, path);
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public FetchedTables fetchTables(NbpTable table, LocalDate startDate, LocalDate endDate) {
+        if (tables.isEmpty()) {
+            return new FetchedTables(List.of(), startDate.minusDays(1));
+        }
+        List<ExchangeRate> rates = new ArrayList<>();
+        for (Map.Entry<LocalDate, List<ExchangeRate>> day : tables.subMap(startDate, true, endDate, true).entrySet()) {
+            for (ExchangeRate rate : day.getValue()) {
+                if (rate.getCurrencyFrom().getNbpTable() == table) {
+                    rates.add(rate);
+                }
+            }
+        }
+        // The snapshot knows nothing about the days after its last table
+        LocalDate lastTable = tables.lastKey();
+        return new FetchedTables(rates, lastTable.isBefore(endDate) ? lastTable : endDate);
+    }
+}
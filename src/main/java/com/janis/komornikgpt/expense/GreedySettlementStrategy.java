@@ -0,0 +1,63 @@
+package com.janis.komornikgpt.expense;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.PriorityQueue;
+
+/**
+ * Pairs the largest debtor with the largest creditor until everything is settled. Fast, but may produce more
+ * transfers than necessary when subsets of members cancel out.
+ */
+@Component
+@ConditionalOnProperty(name = "settlement.strategy", havingValue = "greedy")
+public class GreedySettlementStrategy implements SettlementStrategy {
+
+    @Override
+    public TransferPlan settle(long[] balances) {
+        TransferPlan plan = new TransferPlan(SettlementAlgorithm.GREEDY);
+        long[] remaining = balances.clone();
+        int[] members = new int[remaining.length];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = i;
+        }
+        settle(members, remaining, plan);
+        return plan;
+    }
+
+    /**
+     * Settles the given members against each other, updating {@code remaining} in place. Inside a zero-sum group
+     * of k members this needs at most k-1 transfers.
+     */
+    static void settle(int[] members, long[] remaining, TransferPlan plan) {
+        PriorityQueue<Integer> debtors = new PriorityQueue<>(members.length,
+                (a, b) -> Long.compare(remaining[a], remaining[b]));
+        PriorityQueue<Integer> creditors = new PriorityQueue<>(members.length,
+                (a, b) -> Long.compare(remaining[b], remaining[a]));
+        for (int i : members) {
+            if (remaining[i] < 0) {
+                debtors.add(i);
+            } else if (remaining[i] > 0) {
+                creditors.add(i);
+            }
+        }
+
+        while (!debtors.isEmpty() && !creditors.isEmpty()) {
+            int debtor = debtors.poll();
+            int creditor = creditors.poll();
+
+            long amount = Math.min(-remaining[debtor], remaining[creditor]);
+            plan.add(debtor, creditor, amount);
+
+            remaining[debtor] += amount;
+            remaining[creditor] -= amount;
+
+            if (remaining[debtor] < 0) {
+                debtors.add(debtor);
+            }
+            if (remaining[creditor] > 0) {
+                creditors.add(creditor);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.group.GroupRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintenance commands for the balance ledger: {@code GET /actuator/groupbalances} lists drifted groups,
+ * {@code GET /actuator/groupbalances/{groupId}} shows the drift of one group and
+ * {@code POST /actuator/groupbalances/{groupId}} rebuilds it from the unpaid expenses.
+ */
+@Component
+@Endpoint(id = "groupbalances")
+@RequiredArgsConstructor
+public class GroupBalanceEndpoint {
+
+    private final GroupBalanceService groupBalanceService;
+    private final GroupRepository groupRepository;
+
+    @ReadOperation
+    public Map<Long, List<BalanceDrift>> verifyAll() {
+        Map<Long, List<BalanceDrift>> result = new LinkedHashMap<>();
+        for (Long groupId : groupRepository.findAllIds()) {
+            List<BalanceDrift> drifts = groupBalanceService.verify(groupId);
+            if (!drifts.isEmpty()) {
+                result.put(groupId, drifts);
+            }
+        }
+        return result;
+    }
+
+    @ReadOperation
+    public List<BalanceDrift> verify(@Selector Long groupId) {
+        return groupBalanceService.verify(groupId);
+    }
+
+    @WriteOperation
+    public List<BalanceDrift> rebuild(@Selector Long groupId) {
+        return groupBalanceService.rebuild(groupId);
+    }
+}
@@ -0,0 +1,53 @@
+package com.janis.komornikgpt.expense;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface GroupBalanceRepository extends JpaRepository<GroupBalance, Long> {
+
+    @Query("""
+            SELECT new com.janis.komornikgpt.expense.MemberBalance(u.id, u.name, b.currency, b.amount)
+            FROM GroupBalance b JOIN b.user u
+            WHERE b.group.id = :groupId
+            """)
+    List<MemberBalance> findMemberBalancesByGroupId(@Param("groupId") Long groupId);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO group_balances (group_id, user_id, currency, amount)
+            VALUES (:groupId, :userId, :currency, :delta)
+            ON CONFLICT (group_id, user_id, currency)
+            DO UPDATE SET amount = group_balances.amount + EXCLUDED.amount
+            """, nativeQuery = true)
+    void addToBalance(@Param("groupId") Long groupId,
+                      @Param("userId") Long userId,
+                      @Param("currency") String currency,
+                      @Param("delta") BigDecimal delta);
+
+    /**
+     * Adds {@code deltas[i]} to the balance of {@code userIds[i]} in one statement; the arrays must have equal length.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO group_balances (group_id, user_id, currency, amount)
+            SELECT :groupId, d.user_id, :currency, d.delta
+            FROM unnest(CAST(:userIds AS bigint[]), CAST(:deltas AS numeric[])) AS d(user_id, delta)
+            ON CONFLICT (group_id, user_id, currency)
+            DO UPDATE SET amount = group_balances.amount + EXCLUDED.amount
+            """, nativeQuery = true)
+    void addToBalances(@Param("groupId") Long groupId,
+                       @Param("currency") String currency,
+                       @Param("userIds") Long[] userIds,
+                       @Param("deltas") BigDecimal[] deltas);
+
+    @Modifying
+    @Query("DELETE FROM GroupBalance b WHERE b.group.id = :groupId")
+    void deleteAllByGroupId(@Param("groupId") Long groupId);
+}
@@ -0,0 +1,132 @@
+package com.janis.komornikgpt.expense;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Keeps the {@code group_balances} ledger in sync with unpaid expenses. Every write applies only the delta of
+ * the changed expense, so reading the balances of a group costs O(members x currencies) rows.
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class GroupBalanceService {
+
+    private final GroupBalanceRepository groupBalanceRepository;
+    private final ExpenseRepository expenseRepository;
+
+    public List<MemberBalance> findBalances(Long groupId) {
+        return groupBalanceRepository.findMemberBalancesByGroupId(groupId);
+    }
+
+    public void addExpense(Expense expense) {
+        apply(expense, false);
+    }
+
+    public void removeExpense(Expense expense) {
+        apply(expense, true);
+    }
+
+    public void clearGroup(Long groupId) {
+        groupBalanceRepository.deleteAllByGroupId(groupId);
+    }
+
+    private void apply(Expense expense, boolean negate) {
+        if (Boolean.TRUE.equals(expense.getPaid()) || expense.getGroup() == null) {
+            return;
+        }
+        Map<Long, BigDecimal> deltas = new LinkedHashMap<>();
+        if (expense.getPayer() != null && expense.getAmount() != null) {
+            deltas.merge(expense.getPayer().getId(), expense.getAmount(), BigDecimal::add);
+        }
+        for (ExpenseSplit split : expense.getSplits()) {
+            if (split.getUser() != null && split.getAmountOwed() != null) {
+                deltas.merge(split.getUser().getId(), split.getAmountOwed().negate(), BigDecimal::add);
+            }
+        }
+
+        if (negate) {
+            deltas.replaceAll((userId, delta) -> delta.negate());
+        }
+        addDeltas(expense.getGroup().getId(), expense.getCurrency(), deltas);
+    }
+
+    /**
+     * Adds per-user deltas (paid minus owed) of unpaid expenses in one currency, e.g. summed over a batch of
+     * imported expenses. One statement regardless of the number of users; rows are upserted in user id order, so
+     * concurrent writers lock them in the same order.
+     */
+    public void addDeltas(Long groupId, Currency currency, Map<Long, BigDecimal> deltas) {
+        List<Map.Entry<Long, BigDecimal>> changed = deltas.entrySet().stream()
+                .filter(delta -> delta.getValue().signum() != 0)
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+        if (changed.isEmpty()) {
+            return;
+        }
+        groupBalanceRepository.addToBalances(groupId, currency.name(),
+                changed.stream().map(Map.Entry::getKey).toArray(Long[]::new),
+                changed.stream().map(Map.Entry::getValue).toArray(BigDecimal[]::new));
+    }
+
+    @Transactional(readOnly = true)
+    public List<BalanceDrift> verify(Long groupId) {
+        Map<String, BalanceDrift> drifts = new LinkedHashMap<>();
+        for (MemberBalance balance : groupBalanceRepository.findMemberBalancesByGroupId(groupId)) {
+            drifts.put(key(balance.userId(), balance.currency()),
+                    new BalanceDrift(balance.userId(), balance.currency(), balance.amount(), BigDecimal.ZERO));
+        }
+        for (UserCurrencyTotal total : sumUnpaid(groupId)) {
+            BalanceDrift existing = drifts.get(key(total.userId(), total.currency()));
+            BigDecimal ledger = existing != null ? existing.ledger() : BigDecimal.ZERO;
+            drifts.put(key(total.userId(), total.currency()),
+                    new BalanceDrift(total.userId(), total.currency(), ledger, total.amount()));
+        }
+        return drifts.values().stream()
+                .filter(drift -> drift.ledger().compareTo(drift.actual()) != 0)
+                .toList();
+    }
+
+    @Transactional
+    public List<BalanceDrift> rebuild(Long groupId) {
+        List<BalanceDrift> drifts = verify(groupId);
+        if (!drifts.isEmpty()) {
+            log.warn("Group {} balance ledger drifted on {} entries, rebuilding", groupId, drifts.size());
+        }
+        groupBalanceRepository.deleteAllByGroupId(groupId);
+        for (UserCurrencyTotal total : sumUnpaid(groupId)) {
+            if (total.amount().signum() != 0) {
+                groupBalanceRepository.addToBalance(groupId, total.userId(), total.currency().name(), total.amount());
+            }
+        }
+        return drifts;
+    }
+
+    /**
+     * Paid minus owed per (user, currency), computed from the two aggregate queries over unpaid expenses.
+     */
+    private Collection<UserCurrencyTotal> sumUnpaid(Long groupId) {
+        Map<String, UserCurrencyTotal> totals = new LinkedHashMap<>();
+        for (UserCurrencyTotal paid : expenseRepository.sumUnpaidPaidByGroupId(groupId)) {
+            totals.merge(key(paid.userId(), paid.currency()), paid, GroupBalanceService::sum);
+        }
+        for (UserCurrencyTotal owed : expenseRepository.sumUnpaidOwedByGroupId(groupId)) {
+            totals.merge(key(owed.userId(), owed.currency()),
+                    new UserCurrencyTotal(owed.userId(), owed.currency(), owed.amount().negate()), GroupBalanceService::sum);
+        }
+        return totals.values();
+    }
+
+    private static UserCurrencyTotal sum(UserCurrencyTotal a, UserCurrencyTotal b) {
+        return new UserCurrencyTotal(a.userId(), a.currency(), a.amount().add(b.amount()));
+    }
+
+    private static String key(Long userId, Currency currency) {
+        return userId + ":" + currency;
+    }
+}
@@ -0,0 +1,39 @@
+package com.janis.komornikgpt.expense;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded map that evicts the least recently used entry. All operations are synchronized.
+ */
+public final class LruCache<K, V> {
+
+    private final Map<K, V> entries;
+    private final Runnable onEviction;
+
+    public LruCache(int maxSize, Runnable onEviction) {
+        this.onEviction = onEviction;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > maxSize) {
+                    LruCache.this.onEviction.run();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,9 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+
+/**
+ * Ledger row of one member in one currency, read without hydrating {@link GroupBalance} and {@code User}.
+ */
+public record MemberBalance(Long userId, String userName, Currency currency, BigDecimal amount) {
+}
@@ -1,35 +1,50 @@
 package com.janis.komornikgpt.expense;
 
+import com.janis.komornikgpt.exception.ExchangeRateUnavailableException;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
-import org.springframework.web.client.RestClientResponseException;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.Optional;
+import java.util.*;
 
 @Log4j2
 @Service
 public class NBPExchangeService {
 
-    private static final int MAX_RETRIES = 5;
+    // NBP serves at most 93 days of tables per request
+    private static final int MAX_TABLE_RANGE_DAYS = 93;
 
     private final ExchangeRateRepository exchangeRateRepository;
-    private final RestClient restClient;
+    private final ExchangeRateProvider exchangeRateProvider;
+    private final ExchangeRateCache rateCache;
+    private final SingleFlight<TableQuarter, Integer> quarterFetches = new SingleFlight<>();
+    private final int warmUpDays;
 
     @Autowired
     public NBPExchangeService(ExchangeRateRepository exchangeRateRepository,
-                              RestClient.Builder restClientBuilder) {
+                              ExchangeRateProvider exchangeRateProvider,
+                              ExchangeRateCache rateCache,
+                              @Value("${exchange-rate.cache.warm-up-days:400}") int warmUpDays) {
         this.exchangeRateRepository = exchangeRateRepository;
-        this.restClient = restClientBuilder.baseUrl("https://api.nbp.pl").build();
+        this.exchangeRateProvider = exchangeRateProvider;
+        this.rateCache = rateCache;
+        this.warmUpDays = warmUpDays;
     }
 
     public BigDecimal convertToPln(BigDecimal amount, Currency currency) {
+        return convertToPln(amount, currency, null);
+    }
+
+    /**
+     * Converts the amount at the rate of the latest table published on or before the given date (today when
+     * {@code null}).
+     */
+    public BigDecimal convertToPln(BigDecimal amount, Currency currency, LocalDate date) {
         if (amount == null) {
             throw new IllegalArgumentException("Kwota nie może być null");
         }
@@ -39,65 +54,214 @@ public class NBPExchangeService {
         if (currency == Currency.PLN) {
             return amount;
         }
+        return rates(Map.of(currency, Collections.singleton(date))).toPln(amount, currency, date);
+    }
 
-        LocalDate currentDate = LocalDate.now();
-        int retryCount = 0;
+    /**
+     * Resolves the PLN rate of every given currency on every given date (today for {@code null}) with the
+     * latest-publication-on-or-before rule. Rates come from the in-memory time series first, then from one database
+     * query over the whole requested period, and the remaining dates are fetched from NBP with one range request of
+     * whole tables per calendar quarter and table kind, so converting many expenses costs a handful of calls at most.
+     */
+    public DatedRates rates(Map<Currency, ? extends Collection<LocalDate>> requested) {
+        Map<Currency, Map<LocalDate, BigDecimal>> rates = new EnumMap<>(Currency.class);
+        Map<Currency, NavigableSet<LocalDate>> missing = new EnumMap<>(Currency.class);
 
-        while (retryCount < MAX_RETRIES) {
-            // 1. Check DB for cached rate
-            Optional<ExchangeRate> cachedRate = exchangeRateRepository
-                    .findByCurrencyFromAndCurrencyToAndDate(currency, Currency.PLN, currentDate);
-            if (cachedRate.isPresent()) {
-                return amount.multiply(cachedRate.get().getRate())
-                        .setScale(2, RoundingMode.HALF_DOWN);
+        // 1. Check the in-memory time series
+        requested.forEach((currency, dates) -> {
+            if (currency == Currency.PLN) {
+                return;
             }
-
-            // 2. If not in DB, fetch from NBP
-            String formattedDate = currentDate.format(DateTimeFormatter.ISO_LOCAL_DATE);
-            String url = String.format(
-                    "/api/exchangerates/rates/a/%s/%s/?format=json",
-                    currency.toString().toLowerCase(), formattedDate);
-
-            try {
-                ExchangeRateResponse response = restClient.get()
-                        .uri(url)
-                        .retrieve()
-                        .body(ExchangeRateResponse.class);
-
-                if (response != null && response.rates() != null && response.rates().length > 0) {
-                    BigDecimal exchangeRate = response.rates()[0].mid();
-
-                    // Save to DB
-                    ExchangeRate newRate = new ExchangeRate();
-                    newRate.setCurrencyFrom(currency);
-                    newRate.setCurrencyTo(Currency.PLN);
-                    newRate.setDate(currentDate);
-                    newRate.setRate(exchangeRate);
-                    exchangeRateRepository.save(newRate);
-
-                    return amount.multiply(exchangeRate)
-                            .setScale(2, RoundingMode.HALF_DOWN);
-                } else {
-                    log.warn("Otrzymano pustą odpowiedź z API NBP dla daty {}", formattedDate);
-                }
-            } catch (RestClientResponseException e) {
-                if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
-                    log.debug("Brak kursu dla daty {}, próbuję dla poprzedniego dnia",
-                            formattedDate);
-                    currentDate = currentDate.minusDays(1);
-                    retryCount++;
+            for (LocalDate requestedDate : dates) {
+                LocalDate date = rateDate(requestedDate);
+                BigDecimal cached = rateCache.find(currency, date);
+                if (cached != null) {
+                    rates.computeIfAbsent(currency, c -> new HashMap<>()).put(date, cached);
                 } else {
-                    log.error("Błąd podczas komunikacji z API NBP: {}", e.getMessage(), e);
-                    throw e;
+                    missing.computeIfAbsent(currency, c -> new TreeSet<>()).add(date);
                 }
-            } catch (Exception e) {
-                log.error("Nieoczekiwany błąd podczas konwersji waluty: {}", e.getMessage(), e);
-                throw new RuntimeException("Błąd podczas konwersji waluty", e);
             }
+        });
+        if (missing.isEmpty()) {
+            return new DatedRates(rates, false);
+        }
+
+        // 2. One query for the stored rates of the whole missing period
+        LocalDate first = missing.values().stream().map(NavigableSet::first).min(Comparator.naturalOrder()).orElseThrow();
+        LocalDate last = missing.values().stream().map(NavigableSet::last).max(Comparator.naturalOrder()).orElseThrow();
+        int lookbackDays = missing.keySet().stream().mapToInt(c -> c.getNbpTable().lookbackDays()).max().orElseThrow();
+        exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                        Currency.PLN, missing.keySet(), first.minusDays(lookbackDays), last)
+                .forEach(rate -> rateCache.put(rate.getCurrencyFrom(), rate.getDate(), rate.getRate()));
+        resolveFromCache(missing, rates);
+
+        // 3. Fetch the quarters holding the remaining dates from NBP, then the quarters before them for dates whose
+        // latest publication falls into the previous quarter (first days of January)
+        try {
+            fetchQuarters(missing, false);
+            resolveFromCache(missing, rates);
+            fetchQuarters(missing, true);
+            resolveFromCache(missing, rates);
+        } catch (ExchangeRateUnavailableException e) {
+            log.warn("Źródła kursów walut niedostępne, używam ostatnich zapisanych kursów: {}", e.getMessage());
+        }
+        if (missing.isEmpty()) {
+            return new DatedRates(rates, false);
+        }
+
+        // 4. The providers are down or do not know the dates, fall back to the most recent stored rates
+        resolveStale(missing, rates);
+        if (!missing.isEmpty()) {
+            log.warn("Nie udało się pobrać kursów walut: {}", missing);
+            throw new ExchangeRateUnavailableException("Nie udało się pobrać kursów walut " + missing.keySet()
+                    + " z okresu " + first + " - " + last);
+        }
+        return new DatedRates(rates, true);
+    }
+
+    private void resolveStale(Map<Currency, NavigableSet<LocalDate>> missing,
+                              Map<Currency, Map<LocalDate, BigDecimal>> rates) {
+        missing.forEach((currency, dates) -> dates.removeIf(date -> {
+            BigDecimal rate = rateCache.findLatestKnown(currency, date);
+            if (rate == null) {
+                rate = exchangeRateRepository
+                        .findFirstByCurrencyFromAndCurrencyToAndDateLessThanEqualOrderByDateDesc(currency, Currency.PLN, date)
+                        .map(ExchangeRate::getRate)
+                        .orElse(null);
+            }
+            if (rate != null) {
+                rates.computeIfAbsent(currency, c -> new HashMap<>()).put(date, rate);
+            }
+            return rate != null;
+        }));
+        missing.values().removeIf(Set::isEmpty);
+    }
+
+    private void fetchQuarters(Map<Currency, NavigableSet<LocalDate>> missing, boolean lookback) {
+        Set<TableQuarter> quarters = new LinkedHashSet<>();
+        missing.forEach((currency, dates) -> {
+            NbpTable table = currency.getNbpTable();
+            int daysBefore = lookback ? table.lookbackDays() : 0;
+            dates.forEach(date -> quarters.add(new TableQuarter(table, quarterStart(date.minusDays(daysBefore)))));
+        });
+        quarters.forEach(this::fetchQuarter);
+    }
+
+    /**
+     * Fetches the tables of one kind from one calendar quarter (at most 92 days, one NBP request). Concurrent
+     * requests for the same quarter are coalesced into a single upstream call and insert, the waiting threads share
+     * its result or failure. Tables carry every currency of their kind, so the table and quarter are the key.
+     */
+    private void fetchQuarter(TableQuarter quarter) {
+        LocalDate today = LocalDate.now();
+        LocalDate quarterEnd = quarter.start().plusMonths(3).minusDays(1);
+        LocalDate endDate = quarterEnd.isAfter(today) ? today : quarterEnd;
+        quarterFetches.execute(quarter, () -> {
+            // Another request may have fetched (a part of) this quarter in the meantime
+            LocalDate startDate = rateCache.firstUncoveredDate(quarter.table(), quarter.start());
+            if (startDate.isAfter(endDate)) {
+                return 0;
+            }
+            return store(fetchTables(quarter.table(), startDate, endDate));
+        });
+    }
+
+    private static LocalDate quarterStart(LocalDate date) {
+        return LocalDate.of(date.getYear(), (date.getMonthValue() - 1) / 3 * 3 + 1, 1);
+    }
+
+    /**
+     * Rates are published for past days only, so later dates use the latest table.
+     */
+    static LocalDate rateDate(LocalDate date) {
+        LocalDate today = LocalDate.now();
+        return date == null || date.isAfter(today) ? today : date;
+    }
+
+    private void resolveFromCache(Map<Currency, NavigableSet<LocalDate>> missing,
+                                  Map<Currency, Map<LocalDate, BigDecimal>> rates) {
+        missing.forEach((currency, dates) -> dates.removeIf(date -> {
+            BigDecimal rate = rateCache.find(currency, date);
+            if (rate != null) {
+                rates.computeIfAbsent(currency, c -> new HashMap<>()).put(date, rate);
+            }
+            return rate != null;
+        }));
+        missing.values().removeIf(Set::isEmpty);
+    }
+
+    /**
+     * Loads the rates of the last {@code exchange-rate.cache.warm-up-days} days into the in-memory time series.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpRateCache() {
+        LocalDate today = LocalDate.now();
+        List<ExchangeRate> stored = exchangeRateRepository
+                .findAllByCurrencyToAndDateBetween(Currency.PLN, today.minusDays(warmUpDays), today);
+        stored.forEach(rate -> rateCache.put(rate.getCurrencyFrom(), rate.getDate(), rate.getRate()));
+        log.info("Załadowano {} kursów walut do pamięci podręcznej", stored.size());
+    }
+
+    /**
+     * Fetches all table A and B rates published between the given dates and stores the missing ones.
+     *
+     * @return number of inserted rates
+     */
+    public int backfill(LocalDate startDate, LocalDate endDate) {
+        int inserted = 0;
+        for (NbpTable table : NbpTable.values()) {
+            for (LocalDate from = startDate; !from.isAfter(endDate); from = from.plusDays(MAX_TABLE_RANGE_DAYS)) {
+                LocalDate to = from.plusDays(MAX_TABLE_RANGE_DAYS - 1);
+                inserted += store(fetchTables(table, from, to.isAfter(endDate) ? endDate : to));
+            }
+        }
+        log.info("Uzupełniono {} kursów walut z okresu {} - {}", inserted, startDate, endDate);
+        return inserted;
+    }
+
+    /**
+     * Fetches and stores the tables of the given day: table A, and on Wednesdays also table B.
+     *
+     * @return {@code false} when NBP has not published one of these tables for that day (yet)
+     */
+    public boolean prefetch(LocalDate date) {
+        boolean published = true;
+        for (NbpTable table : NbpTable.values()) {
+            if (!table.publishedOn(date.getDayOfWeek())) {
+                continue;
+            }
+            List<ExchangeRate> rates = fetchTables(table, date, date);
+            int inserted = store(rates);
+            log.info("Pobrano tabelę {} kursów NBP z dnia {}: {} kursów, {} nowych",
+                    table, date, rates.size(), inserted);
+            published &= !rates.isEmpty();
         }
+        return published;
+    }
+
+    /**
+     * Stores the missing rates with a single batched insert.
+     *
+     * @return number of inserted rates
+     */
+    private int store(List<ExchangeRate> rates) {
+        return exchangeRateRepository.insertMissing(rates);
+    }
+
+    /**
+     * Fetches the tables of the range from the providers and caches their rates. The range is then marked as
+     * covered up to the date the provider knows about, so days without a published table resolve to the previous one.
+     */
+    private List<ExchangeRate> fetchTables(NbpTable table, LocalDate startDate, LocalDate endDate) {
+        rateCache.recordUpstreamCall();
+        FetchedTables tables = exchangeRateProvider.fetchTables(table, startDate, endDate);
+        tables.rates().forEach(rate -> rateCache.put(rate.getCurrencyFrom(), rate.getDate(), rate.getRate()));
+        if (!tables.coveredUntil().isBefore(startDate)) {
+            rateCache.markCovered(table, startDate, tables.coveredUntil());
+        }
+        return tables.rates();
+    }
 
-        log.warn("Nie udało się pobrać kursu waluty po {} próbach", MAX_RETRIES);
-        throw new RuntimeException(
-                "Nie udało się pobrać kursu waluty po " + MAX_RETRIES + " próbach");
+    private record TableQuarter(NbpTable table, LocalDate start) {
     }
 }
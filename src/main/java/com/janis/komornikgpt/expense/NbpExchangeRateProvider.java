@@ -0,0 +1,86 @@
+package com.janis.komornikgpt.expense;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tables A and B of the NBP web API. One request returns the whole tables of a day or of a range of up to 93 days.
+ */
+@Log4j2
+@Component
+@Order(1)
+@ConditionalOnProperty(name = "exchange-rate.nbp.enabled", havingValue = "true", matchIfMissing = true)
+public class NbpExchangeRateProvider implements ExchangeRateProvider {
+
+    private final RestClient restClient;
+
+    public NbpExchangeRateProvider(RestClient.Builder restClientBuilder,
+                                   @Value("${exchange-rate.nbp.base-url:https://api.nbp.pl}") String baseUrl,
+                                   @Value("${exchange-rate.nbp.connect-timeout:2s}") Duration connectTimeout,
+                                   @Value("${exchange-rate.nbp.read-timeout:5s}") Duration readTimeout) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeout);
+        requestFactory.setReadTimeout(readTimeout);
+        this.restClient = restClientBuilder.clone()
+                .baseUrl(baseUrl)
+                .requestFactory(requestFactory)
+                .build();
+    }
+
+    @Override
+    public String name() {
+        return "nbp";
+    }
+
+    @Override
+    public FetchedTables fetchTables(NbpTable table, LocalDate startDate, LocalDate endDate) {
+        String url = startDate.equals(endDate)
+                ? String.format("/api/exchangerates/tables/%s/%s/?format=json", table.code(),
+                startDate.format(DateTimeFormatter.ISO_LOCAL_DATE))
+                : String.format("/api/exchangerates/tables/%s/%s/%s/?format=json", table.code(),
+                startDate.format(DateTimeFormatter.ISO_LOCAL_DATE), endDate.format(DateTimeFormatter.ISO_LOCAL_DATE));
+        ExchangeRateTableResponse[] tables;
+        try {
+            tables = restClient.get()
+                    .uri(url)
+                    .retrieve()
+                    .body(ExchangeRateTableResponse[].class);
+        } catch (RestClientResponseException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                log.debug("Brak tabel kursów {} dla okresu {} - {}", table, startDate, endDate);
+                return new FetchedTables(List.of(), endDate);
+            }
+            log.error("Błąd podczas komunikacji z API NBP: {}", e.getMessage());
+            throw e;
+        }
+        if (tables == null) {
+            log.warn("Otrzymano pustą odpowiedź z API NBP dla tabeli {} i okresu {} - {}", table, startDate, endDate);
+            return new FetchedTables(List.of(), endDate);
+        }
+
+        List<ExchangeRate> rates = new ArrayList<>();
+        for (ExchangeRateTableResponse response : tables) {
+            LocalDate effectiveDate = LocalDate.parse(response.effectiveDate());
+            for (TableRate tableRate : response.rates()) {
+                Currency currency = Currency.fromCode(tableRate.code());
+                if (currency != null && currency.getNbpTable() == table) {
+                    rates.add(ExchangeRate.of(currency, effectiveDate, tableRate.mid()));
+                }
+            }
+        }
+        return new FetchedTables(rates, endDate);
+    }
+}
@@ -0,0 +1,35 @@
+package com.janis.komornikgpt.expense;
+
+import java.time.DayOfWeek;
+
+/**
+ * NBP average rate tables. Table A is published every working day, table B (less traded currencies) once a week,
+ * on Wednesday.
+ */
+public enum NbpTable {
+
+    A(7),
+    B(14);
+
+    // Longest stretch of days without a table of this kind (holidays included) is shorter than this
+    private final int lookbackDays;
+
+    NbpTable(int lookbackDays) {
+        this.lookbackDays = lookbackDays;
+    }
+
+    public int lookbackDays() {
+        return lookbackDays;
+    }
+
+    public String code() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * @return whether a new table may still be published on a day of this week day
+     */
+    public boolean publishedOn(DayOfWeek dayOfWeek) {
+        return this == A ? dayOfWeek.getValue() <= DayOfWeek.FRIDAY.getValue() : dayOfWeek == DayOfWeek.WEDNESDAY;
+    }
+}
@@ -0,0 +1,58 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * PLN rates of one currency sorted by publication day. Days are kept as epoch days and rates as longs scaled by
+ * 10^8 in two parallel arrays, so a lookup is a binary search without boxing.
+ */
+final class RateTimeSeries {
+
+    private static final int RATE_SCALE = 8;
+
+    private int[] days = new int[16];
+    private long[] rates = new long[16];
+    private int size;
+
+    synchronized void put(int day, BigDecimal rate) {
+        long scaled = rate.setScale(RATE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        int index = Arrays.binarySearch(days, 0, size, day);
+        if (index >= 0) {
+            rates[index] = scaled;
+            return;
+        }
+        int insertAt = -index - 1;
+        if (size == days.length) {
+            days = Arrays.copyOf(days, size * 2);
+            rates = Arrays.copyOf(rates, size * 2);
+        }
+        System.arraycopy(days, insertAt, days, insertAt + 1, size - insertAt);
+        System.arraycopy(rates, insertAt, rates, insertAt + 1, size - insertAt);
+        days[insertAt] = day;
+        rates[insertAt] = scaled;
+        size++;
+    }
+
+    /**
+     * @return the latest publication on or before {@code day}, or {@code null} when there is none
+     */
+    synchronized Publication floor(int day) {
+        int index = Arrays.binarySearch(days, 0, size, day);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        if (index < 0) {
+            return null;
+        }
+        return new Publication(days[index], BigDecimal.valueOf(rates[index], RATE_SCALE).stripTrailingZeros());
+    }
+
+    synchronized int lastDay() {
+        return size == 0 ? Integer.MIN_VALUE : days[size - 1];
+    }
+
+    record Publication(int day, BigDecimal rate) {
+    }
+}
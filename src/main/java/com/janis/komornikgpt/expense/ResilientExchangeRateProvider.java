@@ -0,0 +1,97 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.exception.ExchangeRateUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Tries the configured providers in order. Every call is bounded by {@code exchange-rate.provider.timeout}, so a
+ * slow NBP does not hold request threads, and each provider has its own {@link CircuitBreaker}, so a provider that
+ * keeps failing is skipped without waiting for the timeout.
+ */
+@Log4j2
+@Primary
+@Component
+public class ResilientExchangeRateProvider implements ExchangeRateProvider {
+
+    private final List<GuardedProvider> providers;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ResilientExchangeRateProvider(List<ExchangeRateProvider> providers,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${exchange-rate.provider.timeout:5s}") Duration timeout,
+                                         @Value("${exchange-rate.circuit-breaker.failure-threshold:3}") int failureThreshold,
+                                         @Value("${exchange-rate.circuit-breaker.open-duration:1m}") Duration openDuration) {
+        this.providers = providers.stream()
+                .map(provider -> new GuardedProvider(provider, new CircuitBreaker(failureThreshold, openDuration.toNanos())))
+                .toList();
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+        for (GuardedProvider guarded : this.providers) {
+            Gauge.builder("exchange.rate.provider.circuit.open", guarded.breaker(), b -> b.isOpen() ? 1 : 0)
+                    .tag("provider", guarded.provider().name())
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "resilient";
+    }
+
+    @Override
+    public FetchedTables fetchTables(NbpTable table, LocalDate startDate, LocalDate endDate) {
+        RuntimeException lastFailure = null;
+        for (GuardedProvider guarded : providers) {
+            ExchangeRateProvider provider = guarded.provider();
+            if (!guarded.breaker().tryAcquire(System.nanoTime())) {
+                log.debug("Pominięto źródło kursów {} - obwód otwarty", provider.name());
+                continue;
+            }
+            Future<FetchedTables> call = executor.submit(() -> provider.fetchTables(table, startDate, endDate));
+            try {
+                FetchedTables tables = call.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                guarded.breaker().onSuccess();
+                return tables;
+            } catch (TimeoutException e) {
+                call.cancel(true);
+                lastFailure = new ExchangeRateUnavailableException(
+                        "Przekroczono czas oczekiwania (" + timeout + ") na źródło kursów " + provider.name(), e);
+            } catch (ExecutionException e) {
+                lastFailure = e.getCause() instanceof RuntimeException cause
+                        ? cause : new ExchangeRateUnavailableException(e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                call.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new ExchangeRateUnavailableException("Przerwano pobieranie kursów walut", e);
+            }
+            guarded.breaker().onFailure(System.nanoTime());
+            meterRegistry.counter("exchange.rate.provider.failures", "provider", provider.name()).increment();
+            log.warn("Źródło kursów {} niedostępne dla tabeli {} i okresu {} - {}: {}",
+                    provider.name(), table, startDate, endDate, lastFailure.getMessage());
+        }
+        throw new ExchangeRateUnavailableException(
+                "Żadne źródło kursów walut nie jest dostępne dla tabeli " + table + " i okresu " + startDate + " - "
+                        + endDate, lastFailure);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record GuardedProvider(ExchangeRateProvider provider, CircuitBreaker breaker) {
+    }
+}
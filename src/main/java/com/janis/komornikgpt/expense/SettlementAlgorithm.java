@@ -0,0 +1,17 @@
+package com.janis.komornikgpt.expense;
+
+/**
+ * Algorithm that produced a settlement. Declared from the strongest to the weakest guarantee.
+ */
+public enum SettlementAlgorithm {
+    EXACT,
+    GREEDY;
+
+    public SettlementAlgorithm combine(SettlementAlgorithm other) {
+        return this.ordinal() >= other.ordinal() ? this : other;
+    }
+
+    public String headerValue() {
+        return name().toLowerCase();
+    }
+}
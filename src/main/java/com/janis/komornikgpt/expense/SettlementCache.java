@@ -0,0 +1,60 @@
+package com.janis.komornikgpt.expense;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+/**
+ * Settlement reports keyed by the group data version. Every write bumps the version, so stale entries are never
+ * read again and simply age out of the LRU. Recalculated reports also depend on their currency and the exchange rate
+ * date.
+ */
+@Component
+public class SettlementCache {
+
+    private final LruCache<Key, SettlementReport> cache;
+    private final SingleFlight<Key, SettlementReport> loads = new SingleFlight<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public SettlementCache(MeterRegistry meterRegistry,
+                           @Value("${settlement.cache.max-size:500}") int maxSize) {
+        Counter evictions = meterRegistry.counter("settlement.cache.evictions");
+        this.cache = new LruCache<>(maxSize, evictions::increment);
+        this.hits = meterRegistry.counter("settlement.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("settlement.cache.requests", "result", "miss");
+        Gauge.builder("settlement.cache.size", cache, LruCache::size).register(meterRegistry);
+    }
+
+    /**
+     * @param target currency of a recalculated report, {@code null} for a report in the original currencies
+     */
+    public SettlementReport get(Long groupId, Currency target, Long version, Supplier<SettlementReport> loader) {
+        Key key = new Key(groupId, target, version, target != null ? LocalDate.now() : null);
+        SettlementReport cached = cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return loads.execute(key, () -> {
+            SettlementReport report = cache.get(key);
+            if (report == null) {
+                report = loader.get();
+                // Stale rates are replaced as soon as the providers recover
+                if (!report.stale()) {
+                    cache.put(key, report);
+                }
+            }
+            return report;
+        });
+    }
+
+    private record Key(Long groupId, Currency target, Long version, LocalDate rateDate) {
+    }
+}
@@ -1,20 +1,29 @@
 package com.janis.komornikgpt.expense;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.Data;
 
 import java.math.BigDecimal;
 
 @Data
+@JsonPropertyOrder({"from", "to", "amount", "currency", "stale"})
 public class SettlementDto {
     public String from;
     public String to;
     public BigDecimal amount;
     public Currency currency;
+    // Converted with the most recent stored rate because the rate providers were unavailable
+    public boolean stale;
 
     public SettlementDto(String from, String to, BigDecimal amount, Currency currency) {
+        this(from, to, amount, currency, false);
+    }
+
+    public SettlementDto(String from, String to, BigDecimal amount, Currency currency, boolean stale) {
         this.from = from;
         this.to = to;
         this.amount = amount;
         this.currency = currency;
+        this.stale = stale;
     }
 }
\ No newline at end of file
@@ -0,0 +1,6 @@
+package com.janis.komornikgpt.expense;
+
+import java.util.List;
+
+public record SettlementReport(List<SettlementDto> settlements, SettlementAlgorithm algorithm, boolean stale) {
+}
@@ -0,0 +1,24 @@
+package com.janis.komornikgpt.expense;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @param stale whether the amounts were converted with possibly outdated exchange rates
+ */
+public record SettlementResult(List<Settlement> settlements, SettlementAlgorithm algorithm, boolean stale) {
+
+    public SettlementResult(List<Settlement> settlements, SettlementAlgorithm algorithm) {
+        this(settlements, algorithm, false);
+    }
+
+    public SettlementResult combine(SettlementResult other) {
+        List<Settlement> merged = new ArrayList<>(settlements);
+        merged.addAll(other.settlements());
+        return new SettlementResult(merged, algorithm.combine(other.algorithm()), stale || other.stale());
+    }
+
+    public SettlementResult withStale(boolean stale) {
+        return new SettlementResult(settlements, algorithm, stale);
+    }
+}
@@ -0,0 +1,10 @@
+package com.janis.komornikgpt.expense;
+
+/**
+ * Turns net balances of group members (positive - should receive, negative - should pay) into a list of transfers.
+ * Balances are indexed by the dense member index of a {@link BalanceSheet} and given in minor currency units.
+ */
+public interface SettlementStrategy {
+
+    TransferPlan settle(long[] balances);
+}
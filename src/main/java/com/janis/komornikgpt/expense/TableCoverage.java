@@ -0,0 +1,79 @@
+package com.janis.komornikgpt.expense;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Epoch-day ranges for which every published NBP table of one kind is known, so a day inside a range without a rate
+ * had no table. Ranges are merged on insert. Today (and the following days without a publication) are covered only
+ * provisionally, because a table may still come.
+ */
+final class TableCoverage {
+
+    private final TreeMap<Integer, Integer> ranges = new TreeMap<>();
+    private int provisionalFrom = Integer.MIN_VALUE;
+    private int provisionalTo = Integer.MIN_VALUE;
+    private long provisionalUntil;
+
+    /**
+     * Covers {@code from..to}; the part from {@code today} on only provisionally, as {@code today..provisionalTo},
+     * until {@code provisionalUntilNanos}.
+     */
+    synchronized void add(int from, int to, int today, int provisionalTo, long provisionalUntilNanos) {
+        if (to >= today) {
+            if (from <= today) {
+                this.provisionalFrom = today;
+                this.provisionalTo = provisionalTo;
+                this.provisionalUntil = provisionalUntilNanos;
+            }
+            to = today - 1;
+        }
+        if (from > to) {
+            return;
+        }
+        Map.Entry<Integer, Integer> before = ranges.floorEntry(from);
+        if (before != null && before.getValue() >= from - 1) {
+            from = before.getKey();
+            to = Math.max(to, before.getValue());
+        }
+        Map.Entry<Integer, Integer> next = ranges.ceilingEntry(from);
+        while (next != null && next.getKey() <= to + 1) {
+            to = Math.max(to, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.ceilingEntry(from);
+        }
+        ranges.put(from, to);
+    }
+
+    /**
+     * @return whether all days from {@code from} to {@code to} (inclusive) are covered; an empty range is covered
+     */
+    synchronized boolean covers(int from, int to, long nowNanos) {
+        if (from > to) {
+            return true;
+        }
+        if (to >= provisionalFrom && to <= provisionalTo && nowNanos - provisionalUntil < 0) {
+            to = provisionalFrom - 1;
+            if (from > to) {
+                return true;
+            }
+        }
+        Map.Entry<Integer, Integer> range = ranges.floorEntry(from);
+        return range != null && range.getValue() >= to;
+    }
+
+    /**
+     * @return the first day from {@code from} on that is not covered
+     */
+    synchronized int firstUncovered(int from, long nowNanos) {
+        int day = from;
+        Map.Entry<Integer, Integer> range = ranges.floorEntry(day);
+        if (range != null && range.getValue() >= day) {
+            day = range.getValue() + 1;
+        }
+        if (day >= provisionalFrom && day <= provisionalTo && nowNanos - provisionalUntil < 0) {
+            day = provisionalTo + 1;
+        }
+        return day;
+    }
+}
@@ -0,0 +1,10 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+
+public record TableRate(
+        String currency,
+        String code,
+        BigDecimal mid
+) {
+}
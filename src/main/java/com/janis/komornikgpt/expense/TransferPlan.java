@@ -0,0 +1,57 @@
+package com.janis.komornikgpt.expense;
+
+import java.util.Arrays;
+
+/**
+ * Transfers between dense member indexes of a {@link BalanceSheet}, amounts in minor units.
+ */
+public final class TransferPlan {
+
+    private final SettlementAlgorithm algorithm;
+    private int[] from = new int[8];
+    private int[] to = new int[8];
+    private long[] amounts = new long[8];
+    private int size;
+
+    public TransferPlan(SettlementAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public void add(int fromIndex, int toIndex, long amount) {
+        if (size == from.length) {
+            from = Arrays.copyOf(from, size * 2);
+            to = Arrays.copyOf(to, size * 2);
+            amounts = Arrays.copyOf(amounts, size * 2);
+        }
+        from[size] = fromIndex;
+        to[size] = toIndex;
+        amounts[size] = amount;
+        size++;
+    }
+
+    public void addAll(TransferPlan other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.from[i], other.to[i], other.amounts[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int from(int i) {
+        return from[i];
+    }
+
+    public int to(int i) {
+        return to[i];
+    }
+
+    public long amount(int i) {
+        return amounts[i];
+    }
+
+    public SettlementAlgorithm algorithm() {
+        return algorithm;
+    }
+}
@@ -0,0 +1,10 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Sum of amounts of one user in one currency on one day, aggregated in the database.
+ */
+public record UserCurrencyDayTotal(Long userId, String userName, Currency currency, LocalDate day, BigDecimal amount) {
+}
@@ -0,0 +1,9 @@
+package com.janis.komornikgpt.expense;
+
+import java.math.BigDecimal;
+
+/**
+ * Sum of amounts of one user in one currency, aggregated in the database.
+ */
+public record UserCurrencyTotal(Long userId, Currency currency, BigDecimal amount) {
+}
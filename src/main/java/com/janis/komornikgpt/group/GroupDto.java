@@ -1,11 +1,15 @@
 package com.janis.komornikgpt.group;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.janis.komornikgpt.config.FieldSelection;
 import com.janis.komornikgpt.expense.Currency;
 import com.janis.komornikgpt.user.UserDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 
+@JsonFilter(GroupDto.FIELDS_FILTER)
 public record GroupDto(
     Long id,
     String name,
@@ -18,19 +22,30 @@ public record GroupDto(
     List<Currency> currencies,
     String viewToken
 ) {
+    public static final String FIELDS_FILTER = "groupFields";
+    public static final Set<String> FIELDS = Set.of("id", "name", "description", "members", "createdBy", "createdAt",
+            "isPublic", "defaultCurrency", "currencies", "viewToken");
+
     public static GroupDto fromGroup(Group group) {
+        return fromGroup(group, FieldSelection.ALL);
+    }
+
+    /**
+     * Members are mapped only when selected, so the group may be loaded without them.
+     */
+    public static GroupDto fromGroup(Group group, FieldSelection fields) {
         return new GroupDto(
             group.getId(),
             group.getName(),
                 group.getDescription(),
-            group.getUsers().stream()
+            fields.includes("members") ? group.getUsers().stream()
                 .map(UserDto::fromUser)
-                    .toList(),
+                    .toList() : null,
                 UserDto.fromUser(group.getCreatedBy()),
                 group.getCreatedAt(),
                 group.isPublic(),
                 group.getDefaultCurrency(),
-                group.getCurrencies(),
+                List.copyOf(group.getCurrencies()),
                 group.getViewToken()
         );
     }
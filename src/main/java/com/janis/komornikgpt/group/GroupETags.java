@@ -0,0 +1,74 @@
+package com.janis.komornikgpt.group;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Objects;
+
+/**
+ * Weak ETags of group-scoped GET responses, derived from the group's {@code data_version}. Every expense, settle,
+ * group and membership write bumps the version, and so do updates and deletes of a member (see
+ * {@link GroupRepository#bumpDataVersionOfMemberGroups}), so a matching {@code If-None-Match} is answered with 304
+ * after one primary-key lookup, before any expense is loaded.
+ */
+@Component
+@RequiredArgsConstructor
+public class GroupETags {
+
+    // Revalidate on every request: without it Spring Security sends no-store and the browser never asks again
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    private final GroupRepository groupRepository;
+
+    /**
+     * Sets the ETag and Cache-Control headers of the response, and the 304 status when the client's copy is
+     * current. Call it after the access check and before loading the data.
+     *
+     * @return {@code true} when the handler should return without a body
+     */
+    public boolean checkNotModified(Long groupId, WebRequest request) {
+        Long version = version(groupId);
+        return version != null && checkNotModified(groupId, version, null, request);
+    }
+
+    /**
+     * Like {@link #checkNotModified(Long, WebRequest)} for responses that depend on more than the group data, e.g. a
+     * settlement recalculated at today's rates. Read the {@code version} before building the response: a write in
+     * between then only costs an extra 200, never a 304 for outdated data.
+     *
+     * @param variant what else the response depends on, {@code null} when nothing
+     */
+    public boolean checkNotModified(Long groupId, long version, String variant, WebRequest request) {
+        if (request instanceof NativeWebRequest nativeRequest
+                && nativeRequest.getNativeResponse() instanceof HttpServletResponse response) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        }
+        return request.checkNotModified(eTag(groupId, version, variant, request));
+    }
+
+    /**
+     * @return the data version of the group, {@code null} when the group does not exist
+     */
+    public Long version(Long groupId) {
+        return groupRepository.findDataVersion(groupId);
+    }
+
+    /**
+     * The representation depends on the endpoint, its query parameters (fields, format, currency, paging...) and the
+     * {@code Accept} header, so all of them are part of the tag next to the version.
+     */
+    static String eTag(Long groupId, long version, String variant, WebRequest request) {
+        int representation = request instanceof NativeWebRequest nativeRequest
+                && nativeRequest.getNativeRequest() instanceof HttpServletRequest servletRequest
+                ? Objects.hash(servletRequest.getRequestURI(), servletRequest.getQueryString(),
+                        request.getHeader(HttpHeaders.ACCEPT))
+                : Objects.hash(request.getDescription(false), request.getHeader(HttpHeaders.ACCEPT));
+        return "W/\"g" + groupId + "-v" + version + (variant != null ? "-" + variant : "") + "-"
+                + Integer.toHexString(representation) + "\"";
+    }
+}
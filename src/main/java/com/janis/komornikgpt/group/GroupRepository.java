@@ -1,11 +1,73 @@
 package com.janis.komornikgpt.group;
 
+import com.janis.komornikgpt.expense.Currency;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface GroupRepository extends JpaRepository<Group, Long> {
-    List<Group> findByUsers_Id(Long userId);
+    @Override
+    @EntityGraph(type = EntityGraph.EntityGraphType.LOAD, attributePaths = {"users", "createdBy"})
+    List<Group> findAll();
+
+    // Group headers for responses without the member list
+    @EntityGraph(type = EntityGraph.EntityGraphType.LOAD, attributePaths = "createdBy")
+    @Query("SELECT g FROM Group g")
+    List<Group> findAllHeaders();
+
+    @EntityGraph(type = EntityGraph.EntityGraphType.LOAD, attributePaths = {"users", "createdBy"})
+    Optional<Group> findWithMembersById(Long id);
+
+    @EntityGraph(type = EntityGraph.EntityGraphType.LOAD, attributePaths = {"users", "createdBy"})
+    List<Group> findAllWithMembersByIdIn(Collection<Long> ids);
+
+    // Filtered in a subquery, so the fetched member list is not limited to the given user
+    @EntityGraph(type = EntityGraph.EntityGraphType.LOAD, attributePaths = {"users", "createdBy"})
+    @Query("SELECT g FROM Group g WHERE g.id IN (SELECT m.id FROM Group m JOIN m.users u WHERE u.id = :userId)")
+    List<Group> findByUsers_Id(@Param("userId") Long userId);
+
+    @EntityGraph(type = EntityGraph.EntityGraphType.LOAD, attributePaths = "createdBy")
+    @Query("SELECT g FROM Group g JOIN g.users u WHERE u.id = :userId")
+    List<Group> findHeadersByUsers_Id(@Param("userId") Long userId);
+
+    boolean existsByIdAndUsers_Username(Long groupId, String username);
+
+    // Access check without loading the group: a member, or anyone with the view token of a public group
+    @Query("""
+            SELECT COUNT(g) > 0 FROM Group g
+            WHERE g.id = :groupId
+              AND ((g.isPublic = true AND g.viewToken = :viewToken)
+                   OR EXISTS (SELECT u FROM g.users u WHERE u.id = :userId))
+            """)
+    boolean canView(@Param("groupId") Long groupId, @Param("userId") Long userId,
+                    @Param("viewToken") String viewToken);
+
+    @Query("SELECT g.id FROM Group g")
+    List<Long> findAllIds();
+
+    @Query("SELECT g.defaultCurrency FROM Group g WHERE g.id = :groupId")
+    Optional<Currency> findDefaultCurrency(@Param("groupId") Long groupId);
+
+    @Query(value = "SELECT data_version FROM groups WHERE id = :groupId", nativeQuery = true)
+    Long findDataVersion(@Param("groupId") Long groupId);
+
+    @Modifying
+    @Query(value = "UPDATE groups SET data_version = data_version + 1 WHERE id = :groupId", nativeQuery = true)
+    void bumpDataVersion(@Param("groupId") Long groupId);
+
+    // The user is embedded in every response of their groups, and deleting them drops their memberships
+    @Modifying
+    @Query(value = """
+            UPDATE groups SET data_version = data_version + 1
+            WHERE id IN (SELECT group_id FROM group_users WHERE user_id = :userId)
+            """, nativeQuery = true)
+    void bumpDataVersionOfMemberGroups(@Param("userId") Long userId);
 }
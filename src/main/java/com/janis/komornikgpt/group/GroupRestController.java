@@ -1,5 +1,7 @@
 package com.janis.komornikgpt.group;
 
+import com.janis.komornikgpt.config.FieldSelection;
+import com.janis.komornikgpt.config.SparseFieldset;
 import com.janis.komornikgpt.exception.GroupNotFoundException;
 import com.janis.komornikgpt.user.User;
 import com.janis.komornikgpt.user.UserService;
@@ -13,6 +15,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.security.Principal;
 import java.util.List;
@@ -23,32 +26,38 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Tag(name = "Group", description = "Endpointy do zarządzania grupami wydatków")
 public class GroupRestController {
+    private static final String FIELDS_DESCRIPTION = "Parametr fields (np. fields=id,name,defaultCurrency) ogranicza "
+            + "odpowiedź do wybranych pól; bez pola members lista członków nie jest pobierana.";
+
     private final GroupService groupService;
     private final UserService userService;
+    private final GroupETags groupETags;
 
     @GetMapping
-    @Operation(summary = "Pobierz wszystkie grupy", description = "Zwraca listę wszystkich dostępnych grup.")
-    public List<GroupDto> getAllGroups() {
-        return groupService.findAll().stream()
-                .map(GroupDto::fromGroup)
+    @SparseFieldset(filter = GroupDto.FIELDS_FILTER)
+    @Operation(summary = "Pobierz wszystkie grupy", description = "Zwraca listę wszystkich dostępnych grup. " + FIELDS_DESCRIPTION)
+    public List<GroupDto> getAllGroups(@RequestParam(required = false) String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, GroupDto.FIELDS);
+        return groupService.findAll(selection).stream()
+                .map(group -> GroupDto.fromGroup(group, selection))
                 .collect(Collectors.toList());
     }
 
     @GetMapping("/{id}")
-    @Operation(summary = "Pobierz grupę po ID", description = "Zwraca szczegóły wybranej grupy wraz z listą członków.")
-    public GroupDto getGroupById(@PathVariable Long id, @RequestParam(required = false) String viewToken, Principal principal) {
-        Group group = groupService.findById(id);
-        if (group.isPublic() && viewToken != null && viewToken.equals(group.getViewToken())) {
-            return GroupDto.fromGroup(group);
+    @SparseFieldset(filter = GroupDto.FIELDS_FILTER)
+    @Operation(summary = "Pobierz grupę po ID", description = "Zwraca szczegóły wybranej grupy wraz z listą członków. " + FIELDS_DESCRIPTION)
+    public GroupDto getGroupById(@PathVariable Long id, @RequestParam(required = false) String viewToken,
+                                 @RequestParam(required = false) String fields, Principal principal,
+                                 WebRequest request) {
+        FieldSelection selection = FieldSelection.parse(fields, GroupDto.FIELDS);
+        Long userId = principal != null ? extractUserId(principal) : null;
+        if (!groupService.canView(id, userId, viewToken)) {
+            throw new GroupNotFoundException("Nie znaleziono grupy lub nie masz dostępu do niej: " + id);
         }
-        if (principal != null) {
-            Long userId = extractUserId(principal);
-            if (group.getUsers().stream().anyMatch(user -> user.getId().equals(userId))) {
-                return GroupDto.fromGroup(group);
-            }
+        if (groupETags.checkNotModified(id, request)) {
+            return null;
         }
-
-        throw new GroupNotFoundException("Nie znaleziono grupy lub nie masz dostępu do niej: " + id);
+        return GroupDto.fromGroup(groupService.findById(id), selection);
     }
 
     @PostMapping
@@ -76,10 +85,12 @@ public class GroupRestController {
     }
 
     @GetMapping("/my")
-    @Operation(summary = "Pobierz moje grupy", description = "Zwraca listę grup, do których należy obecnie zalogowany użytkownik.")
-    public List<GroupDto> getMyGroups() {
-        return groupService.findGroupsForCurrentUser().stream()
-                .map(GroupDto::fromGroup)
+    @SparseFieldset(filter = GroupDto.FIELDS_FILTER)
+    @Operation(summary = "Pobierz moje grupy", description = "Zwraca listę grup, do których należy obecnie zalogowany użytkownik. " + FIELDS_DESCRIPTION)
+    public List<GroupDto> getMyGroups(@RequestParam(required = false) String fields) {
+        FieldSelection selection = FieldSelection.parse(fields, GroupDto.FIELDS);
+        return groupService.findGroupsForCurrentUser(selection).stream()
+                .map(group -> GroupDto.fromGroup(group, selection))
                 .collect(Collectors.toList());
     }
 
@@ -1,5 +1,6 @@
 package com.janis.komornikgpt.group;
 
+import com.janis.komornikgpt.config.FieldSelection;
 import com.janis.komornikgpt.exception.GroupNotFoundException;
 import com.janis.komornikgpt.mail.EmailService;
 import com.janis.komornikgpt.user.*;
@@ -20,12 +21,15 @@ public class GroupService {
     private final UserService userService;
     private final EmailService emailService;
 
-    public List<Group> findAll() {
-        return groupRepository.findAll();
+    /**
+     * Members are fetched only when selected, see {@link GroupDto#fromGroup(Group, FieldSelection)}.
+     */
+    public List<Group> findAll(FieldSelection fields) {
+        return fields.includes("members") ? groupRepository.findAll() : groupRepository.findAllHeaders();
     }
 
     public Group findById(Long id) {
-        return groupRepository.findById(id)
+        return groupRepository.findWithMembersById(id)
                 .orElseThrow(() -> new GroupNotFoundException("Group not found with id: " + id));
     }
 
@@ -143,7 +147,10 @@ public class GroupService {
             group.setUsers(users);
         }
 
-        return groupRepository.save(group);
+        Group saved = groupRepository.save(group);
+        // Names, currencies and members are part of group and expense responses
+        groupRepository.bumpDataVersion(saved.getId());
+        return saved;
     }
 
     @Transactional
@@ -161,22 +168,35 @@ public class GroupService {
         groupRepository.delete(group);
     }
 
+    /**
+     * One exists query for members; the group is looked up only to tell a missing group from a non-member.
+     */
+    @Transactional(readOnly = true)
     public boolean isUserMemberOfGroup(String username, Long groupId) {
-        Group group = groupRepository.findById(groupId)
-                .orElseThrow(() -> new GroupNotFoundException("Group not found with id: " + groupId));
-
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found with username: " + username));
-
-        return group.getUsers().stream()
-                .anyMatch(member -> member.getId().equals(user.getId()));
+        if (groupRepository.existsByIdAndUsers_Username(groupId, username)) {
+            return true;
+        }
+        if (!groupRepository.existsById(groupId)) {
+            throw new GroupNotFoundException("Group not found with id: " + groupId);
+        }
+        return false;
     }
 
-    public List<Group> findGroupsForCurrentUser() {
+    public List<Group> findGroupsForCurrentUser(FieldSelection fields) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        return groupRepository.findByUsers_Id(user.getId());
+        return fields.includes("members")
+                ? groupRepository.findByUsers_Id(user.getId())
+                : groupRepository.findHeadersByUsers_Id(user.getId());
+    }
+
+    /**
+     * One query, so a conditional GET of the group can be answered before the group and its members are loaded.
+     */
+    @Transactional(readOnly = true)
+    public boolean canView(Long groupId, Long userId, String viewToken) {
+        return groupRepository.canView(groupId, userId, viewToken);
     }
 
     public boolean checkViewToken(Long groupId, String viewToken) {
@@ -3,8 +3,10 @@ package com.janis.komornikgpt.mail;
 import com.janis.komornikgpt.user.User;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.SequenceGenerator;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -17,7 +19,8 @@ import java.time.LocalDateTime;
 @ToString
 public class VerificationToken {
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "verification_token_id_seq")
+    @SequenceGenerator(name = "verification_token_id_seq", sequenceName = "verification_token_id_seq", allocationSize = 50)
     private Long id;
 
     private String token;
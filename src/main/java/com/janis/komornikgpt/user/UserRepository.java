@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,9 +19,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
 
+    @Query("SELECT new com.janis.komornikgpt.user.UserDto(u.id, u.username, u.email, u.name, u.surname, u.role) FROM User u WHERE u.id IN :ids")
+    List<UserDto> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("SELECT u FROM User u JOIN u.groups g WHERE g.id = :groupId")
     List<User> findAllByGroupId(@Param("groupId") Long groupId);
 
+    /**
+     * Members of the group among {@code ids}, plus the member named {@code username}: one query checks the caller's
+     * access and resolves the payer and split users of an expense. Ids missing from the result are not members.
+     */
+    @Query("SELECT u FROM User u JOIN u.groups g WHERE g.id = :groupId AND (u.id IN :ids OR u.username = :username)")
+    List<User> findGroupMembers(@Param("groupId") Long groupId, @Param("username") String username,
+                                @Param("ids") Collection<Long> ids);
+
     @Query("SELECT DISTINCT u FROM User u JOIN u.groups g JOIN g.users u2 WHERE u2.id = :userId")
     List<User> findFriendsByUserId(@Param("userId") Long userId);
 }
@@ -4,6 +4,7 @@ import com.janis.komornikgpt.exception.TokenAlreadyExistsException;
 import com.janis.komornikgpt.exception.UserAlreadyExistsException;
 import com.janis.komornikgpt.exception.UserNotFoundException;
 import com.janis.komornikgpt.exception.UsernameAlreadyExistsException;
+import com.janis.komornikgpt.group.GroupRepository;
 import com.janis.komornikgpt.mail.EmailService;
 import com.janis.komornikgpt.mail.VerificationToken;
 import com.janis.komornikgpt.mail.VerificationTokenRepository;
@@ -18,6 +19,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 @Service
@@ -27,6 +29,7 @@ public class UserService implements UserDetailsService {
     private final PasswordEncoder passwordEncoder;
     private final VerificationTokenRepository verificationTokenRepository;
     private final EmailService emailService;
+    private final GroupRepository groupRepository;
 
     @Override
     public @NonNull UserDetails loadUserByUsername(@NonNull String username) throws UsernameNotFoundException {
@@ -89,6 +92,9 @@ public class UserService implements UserDetailsService {
         return userRepository.save(user);
     }
 
+    /**
+     * Bumps the data version of the user's groups when a field embedded in their responses changes.
+     */
     private void updateUserDetails(UpdateUserRequest request, User user) {
         if (request.newPassword() != null && !request.newPassword().isEmpty()) {
             if (request.currentPassword() == null
@@ -98,6 +104,10 @@ public class UserService implements UserDetailsService {
             user.setPassword(passwordEncoder.encode(request.newPassword()));
         }
 
+        if (!Objects.equals(user.getName(), request.name()) || !Objects.equals(user.getSurname(), request.surname())
+                || !Objects.equals(user.getEmail(), request.email())) {
+            groupRepository.bumpDataVersionOfMemberGroups(user.getId());
+        }
         user.setName(request.name());
         user.setSurname(request.surname());
         user.setEmail(request.email());
@@ -118,6 +128,7 @@ public class UserService implements UserDetailsService {
         if (!userRepository.existsById(id)) {
             throw new UserNotFoundException("User not found with id: " + id);
         }
+        groupRepository.bumpDataVersionOfMemberGroups(id);
         userRepository.deleteById(id);
     }
 
@@ -0,0 +1,27 @@
+-- V2__Group_Balances.sql
+
+CREATE TABLE group_balances
+(
+    id       BIGSERIAL PRIMARY KEY,
+    group_id BIGINT         NOT NULL REFERENCES groups (id) ON DELETE CASCADE,
+    user_id  BIGINT         NOT NULL REFERENCES users (id),
+    currency VARCHAR(255)   NOT NULL,
+    amount   NUMERIC(19, 2) NOT NULL DEFAULT 0,
+    CONSTRAINT unique_group_balance UNIQUE (group_id, user_id, currency)
+);
+
+-- Backfill from unpaid expenses: payer +amount, every participant -amount_owed
+INSERT INTO group_balances (group_id, user_id, currency, amount)
+SELECT t.group_id, t.user_id, t.currency, SUM(t.amount)
+FROM (SELECT e.group_id, e.payer_id AS user_id, e.currency, e.amount
+      FROM expenses e
+      WHERE e.is_paid = FALSE
+      UNION ALL
+      SELECT e.group_id, s.user_id, e.currency, -s.amount_owed
+      FROM expense_splits s
+               JOIN expenses e ON e.id = s.expense_id
+      WHERE e.is_paid = FALSE) t
+WHERE t.group_id IS NOT NULL
+  AND t.user_id IS NOT NULL
+  AND t.amount IS NOT NULL
+GROUP BY t.group_id, t.user_id, t.currency;
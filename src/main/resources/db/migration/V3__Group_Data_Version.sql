@@ -0,0 +1,5 @@
+-- V3__Group_Data_Version.sql
+
+-- Bumped by every write that changes the expenses or balances of a group; used as a cache key
+ALTER TABLE groups
+    ADD COLUMN data_version BIGINT NOT NULL DEFAULT 0;
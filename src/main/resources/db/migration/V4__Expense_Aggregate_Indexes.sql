@@ -0,0 +1,5 @@
+-- V4__Expense_Aggregate_Indexes.sql
+
+-- Balance aggregates filter unpaid expenses of a group and join their splits
+CREATE INDEX idx_expenses_group_paid ON expenses (group_id, is_paid);
+CREATE INDEX idx_expense_splits_expense ON expense_splits (expense_id);
@@ -0,0 +1,8 @@
+-- V5__Expense_Keyset_Indexes.sql
+
+-- Expense lists are paginated by (date, id) descending; a missing date would break the ordering
+UPDATE expenses SET date = COALESCE(created_at, now()) WHERE date IS NULL;
+ALTER TABLE expenses ALTER COLUMN date SET NOT NULL;
+
+CREATE INDEX idx_expenses_group_date_id ON expenses (group_id, date DESC, id DESC);
+CREATE INDEX idx_expenses_payer_date_id ON expenses (payer_id, date DESC, id DESC);
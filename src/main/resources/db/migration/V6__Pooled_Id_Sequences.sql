@@ -0,0 +1,13 @@
+-- V6__Pooled_Id_Sequences.sql
+
+-- Entities take their ids from these sequences with Hibernate's pooled optimizer (allocationSize 50): one nextval
+-- reserves the 50 ids ending at the returned value, so inserts no longer need RETURNING and can be batched.
+-- Column defaults still work for plain SQL inserts, they just leave the rest of the block unused.
+-- group_balances is only written by an upsert and keeps its identity column.
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE groups_id_seq INCREMENT BY 50;
+ALTER SEQUENCE expenses_id_seq INCREMENT BY 50;
+ALTER SEQUENCE expense_splits_id_seq INCREMENT BY 50;
+ALTER SEQUENCE refresh_tokens_id_seq INCREMENT BY 50;
+ALTER SEQUENCE exchange_rate_id_seq INCREMENT BY 50;
+ALTER SEQUENCE verification_token_id_seq INCREMENT BY 50;
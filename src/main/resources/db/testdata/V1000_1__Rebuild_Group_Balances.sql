@@ -0,0 +1,19 @@
+-- V1000_1__Rebuild_Group_Balances.sql
+-- Test data is inserted directly, so the balance ledger has to be rebuilt afterwards
+
+DELETE FROM group_balances;
+
+INSERT INTO group_balances (group_id, user_id, currency, amount)
+SELECT t.group_id, t.user_id, t.currency, SUM(t.amount)
+FROM (SELECT e.group_id, e.payer_id AS user_id, e.currency, e.amount
+      FROM expenses e
+      WHERE e.is_paid = FALSE
+      UNION ALL
+      SELECT e.group_id, s.user_id, e.currency, -s.amount_owed
+      FROM expense_splits s
+               JOIN expenses e ON e.id = s.expense_id
+      WHERE e.is_paid = FALSE) t
+WHERE t.group_id IS NOT NULL
+  AND t.user_id IS NOT NULL
+  AND t.amount IS NOT NULL
+GROUP BY t.group_id, t.user_id, t.currency;
@@ -0,0 +1,7 @@
+-- V1000_2__Pooled_Id_Sequences.sql
+-- Restores the allocation size of V6__Pooled_Id_Sequences after the test data
+
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE groups_id_seq INCREMENT BY 50;
+ALTER SEQUENCE expenses_id_seq INCREMENT BY 50;
+ALTER SEQUENCE expense_splits_id_seq INCREMENT BY 50;
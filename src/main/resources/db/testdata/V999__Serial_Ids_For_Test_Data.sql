@@ -0,0 +1,7 @@
+-- V999__Serial_Ids_For_Test_Data.sql
+-- V1000 inserts rows without ids and refers to them as 1, 2, 3..., which needs sequences stepping by 1
+
+ALTER SEQUENCE users_id_seq INCREMENT BY 1;
+ALTER SEQUENCE groups_id_seq INCREMENT BY 1;
+ALTER SEQUENCE expenses_id_seq INCREMENT BY 1;
+ALTER SEQUENCE expense_splits_id_seq INCREMENT BY 1;
@@ -0,0 +1,48 @@
+package com.janis.komornikgpt.config;
+
+import com.janis.komornikgpt.expense.Currency;
+import com.janis.komornikgpt.group.GroupDto;
+import com.janis.komornikgpt.user.UserDto;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FieldSelectionTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().filterProvider(SparseFieldsetAdvice.SERIALIZE_ALL).build();
+    private final GroupDto group = new GroupDto(10L, "Wakacje", "Opis",
+            List.of(new UserDto(1L, "anna", "anna@example.com", null, null, null)), null,
+            LocalDateTime.of(2025, 1, 1, 0, 0), false, Currency.PLN, List.of(Currency.PLN), "token");
+
+    @Test
+    void testParse() {
+        assertTrue(FieldSelection.parse(null).isAll());
+        assertTrue(FieldSelection.parse(" ").isAll());
+        FieldSelection selection = FieldSelection.parse(" id, name ,", GroupDto.FIELDS);
+        assertEquals(Set.of("id", "name"), selection.fields());
+        assertTrue(selection.includes("name"));
+        assertFalse(selection.includes("members"));
+        assertTrue(selection.including("members").includes("members"));
+        assertThrows(IllegalArgumentException.class, () -> FieldSelection.parse("id,password", GroupDto.FIELDS));
+    }
+
+    @Test
+    void testFilterWritesOnlySelectedFields() {
+        // Given
+        FieldSelection selection = FieldSelection.parse("id,name");
+
+        // When
+        String filtered = jsonMapper.writer(SparseFieldsetAdvice.filters(GroupDto.FIELDS_FILTER, selection))
+                .writeValueAsString(group);
+        String whole = jsonMapper.writeValueAsString(group);
+
+        // Then
+        assertEquals("{\"id\":10,\"name\":\"Wakacje\"}", filtered);
+        assertTrue(whole.contains("\"members\"") && whole.contains("\"viewToken\""));
+    }
+}
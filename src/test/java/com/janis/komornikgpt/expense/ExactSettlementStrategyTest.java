@@ -0,0 +1,122 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExactSettlementStrategyTest {
+
+    private List<User> users;
+
+    @BeforeEach
+    void setUp() {
+        users = new ArrayList<>();
+        for (long id = 1; id <= 40; id++) {
+            users.add(User.builder()
+                    .id(id)
+                    .username("user" + id)
+                    .email("user" + id + "@example.com")
+                    .password("password")
+                    .name("User" + id)
+                    .build());
+        }
+    }
+
+    @Test
+    void testExactNeedsFewerTransfersThanGreedyWhenSubsetsCancelOut() {
+        // Given
+        // {-30, 30} i {-80, 60, -20, 40} sumują się do zera, więc wystarczą 1 + 3 przelewy
+        Map<User, BigDecimal> balances = balances(-80, 60, -20, 30, 40, -30);
+
+        // When
+        SettlementResult greedy = settle(new GreedySettlementStrategy(), balances);
+        SettlementResult exact = settle(new ExactSettlementStrategy(Duration.ofSeconds(1), 20), balances);
+
+        // Then
+        assertEquals(5, greedy.settlements().size());
+        assertEquals(4, exact.settlements().size());
+        assertEquals(SettlementAlgorithm.EXACT, exact.algorithm());
+        assertSettles(balances, exact.settlements());
+    }
+
+    @Test
+    void testBranchAndBoundForGroupsAboveDpLimit() {
+        // Given
+        Map<User, BigDecimal> balances = balances(-80, 60, -20, 30, 40, -30, 15, -5, -10);
+
+        // When
+        SettlementResult exact = settle(new ExactSettlementStrategy(Duration.ofSeconds(1), 2), balances);
+
+        // Then
+        assertEquals(6, exact.settlements().size());
+        assertEquals(SettlementAlgorithm.EXACT, exact.algorithm());
+        assertSettles(balances, exact.settlements());
+    }
+
+    @Test
+    void testFallsBackToGreedyWhenBudgetIsExhausted() {
+        // Given
+        Random random = new Random(42);
+        int[] amounts = new int[40];
+        int total = 0;
+        for (int i = 0; i < amounts.length - 1; i++) {
+            amounts[i] = random.nextInt(2000) - 1000;
+            total += amounts[i];
+        }
+        amounts[amounts.length - 1] = -total;
+        Map<User, BigDecimal> balances = balances(amounts);
+
+        // When
+        SettlementResult result = settle(new ExactSettlementStrategy(Duration.ZERO, 20), balances);
+
+        // Then
+        assertEquals(SettlementAlgorithm.GREEDY, result.algorithm());
+        assertSettles(balances, result.settlements());
+    }
+
+    @Test
+    void testZeroDecimalCurrencyIsSettledInWholeUnits() {
+        // Given
+        BalanceSheet sheet = new BalanceSheet(Currency.JPY);
+        sheet.add(users.get(0), new BigDecimal("-1000.40"));
+        sheet.add(users.get(1), new BigDecimal("1000.40"));
+
+        // When
+        SettlementResult result = sheet.toSettlements(new GreedySettlementStrategy().settle(sheet.balances()));
+
+        // Then
+        assertEquals(1, result.settlements().size());
+        assertEquals(new BigDecimal("1000"), result.settlements().getFirst().amount());
+    }
+
+    private SettlementResult settle(SettlementStrategy strategy, Map<User, BigDecimal> balances) {
+        BalanceSheet sheet = new BalanceSheet(Currency.PLN);
+        balances.forEach(sheet::add);
+        return sheet.toSettlements(strategy.settle(sheet.balances()));
+    }
+
+    private Map<User, BigDecimal> balances(int... amounts) {
+        Map<User, BigDecimal> balances = new LinkedHashMap<>();
+        for (int i = 0; i < amounts.length; i++) {
+            balances.put(users.get(i), BigDecimal.valueOf(amounts[i]));
+        }
+        return balances;
+    }
+
+    private void assertSettles(Map<User, BigDecimal> balances, List<Settlement> settlements) {
+        Map<Long, BigDecimal> remaining = new HashMap<>();
+        balances.forEach((user, amount) -> remaining.put(user.getId(), amount));
+        for (Settlement settlement : settlements) {
+            remaining.merge(settlement.from().getId(), settlement.amount(), BigDecimal::add);
+            remaining.merge(settlement.to().getId(), settlement.amount().negate(), BigDecimal::add);
+        }
+        remaining.forEach((userId, amount) ->
+                assertEquals(0, amount.signum(), "Bilans użytkownika " + userId + " powinien wynosić zero"));
+    }
+}
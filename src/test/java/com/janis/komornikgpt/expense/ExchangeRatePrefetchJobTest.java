@@ -0,0 +1,73 @@
+package com.janis.komornikgpt.expense;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExchangeRatePrefetchJobTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 4, 19);
+
+    @Mock
+    private NBPExchangeService nbpExchangeService;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private ExchangeRatePrefetchJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new ExchangeRatePrefetchJob(nbpExchangeService, taskScheduler, 3, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void testNoRetryWhenTableIsPublished() {
+        // Given
+        when(nbpExchangeService.prefetch(DATE)).thenReturn(true);
+
+        // When
+        job.attempt(DATE, 1);
+
+        // Then
+        verifyNoInteractions(taskScheduler);
+    }
+
+    @Test
+    void testRetriesWithDoublingBackoffUntilMaxAttempts() {
+        // Given
+        when(nbpExchangeService.prefetch(DATE)).thenReturn(false).thenThrow(new RuntimeException("503")).thenReturn(false);
+        ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Instant> at = ArgumentCaptor.forClass(Instant.class);
+
+        // When
+        Instant start = Instant.now();
+        job.attempt(DATE, 1);
+        verify(taskScheduler).schedule(retry.capture(), at.capture());
+        retry.getValue().run();
+        verify(taskScheduler, times(2)).schedule(retry.capture(), at.capture());
+        retry.getValue().run();
+
+        // Then
+        // Trzecia próba jest ostatnią - bez kolejnego planowania
+        verify(nbpExchangeService, times(3)).prefetch(DATE);
+        verify(taskScheduler, times(2)).schedule(any(Runnable.class), any(Instant.class));
+        List<Instant> times = at.getAllValues();
+        assertTrue(!times.get(0).isBefore(start.plus(Duration.ofMinutes(5))));
+        assertTrue(!times.get(2).isBefore(start.plus(Duration.ofMinutes(10))));
+    }
+}
@@ -0,0 +1,67 @@
+package com.janis.komornikgpt.expense;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseCursorTest {
+
+    @Test
+    void testRoundTrip() {
+        // Given
+        ExpenseCursor cursor = new ExpenseCursor(LocalDateTime.of(2025, 3, 1, 10, 15, 30, 123_456_000), 204_608L);
+
+        // When
+        String encoded = cursor.encode();
+
+        // Then
+        assertEquals(cursor, ExpenseCursor.decode(encoded));
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), "URL safe without padding: " + encoded);
+        assertEquals("2025-03-01T10:15:30.123456_204608",
+                new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testRoundTripOnFullMinute() {
+        ExpenseCursor cursor = new ExpenseCursor(LocalDateTime.of(2025, 3, 1, 10, 0), 7L);
+
+        assertEquals(cursor, ExpenseCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void testMissingCursorStartsAtFirstPage() {
+        assertSame(ExpenseCursor.FIRST, ExpenseCursor.decode(null));
+        assertSame(ExpenseCursor.FIRST, ExpenseCursor.decode(" "));
+    }
+
+    @Test
+    void testMalformedCursorIsRejected() {
+        assertRejected("nie*base64");
+        assertRejected(encode("2025-03-01T10:00"));
+        assertRejected(encode("2025-03-01T10:00_"));
+        assertRejected(encode("2025-03-01T10:00_abc"));
+        assertRejected(encode("2025-13-01T10:00_7"));
+        assertRejected(encode("_7"));
+    }
+
+    @Test
+    void testTamperedCursorIsRejected() {
+        String encoded = new ExpenseCursor(LocalDateTime.of(2025, 3, 1, 10, 0), 7L).encode();
+
+        assertRejected(encoded.substring(0, encoded.length() - 2));
+        assertRejected(encoded + "=x");
+    }
+
+    private static void assertRejected(String cursor) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ExpenseCursor.decode(cursor));
+        assertEquals("Nieprawidłowy kursor stronicowania: " + cursor, e.getMessage());
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,47 @@
+package com.janis.komornikgpt.expense;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseExportServiceTest {
+
+    @Test
+    void testCsvLine() throws IOException {
+        // Given
+        ExpenseExportRow row = new ExpenseExportRow(7L, LocalDateTime.of(2025, 3, 1, 10, 0),
+                "Pizza, \"Margherita\"", ExpenseCategory.NO_CATEGORY_GENERAL, new BigDecimal("30.00"), Currency.PLN,
+                2L, "bartek", false, List.of(new ExpenseExportRow.Split(1L, "anna", new BigDecimal("15.00")),
+                new ExpenseExportRow.Split(2L, "bartek", new BigDecimal("15.00"))));
+        StringWriter writer = new StringWriter();
+
+        // When
+        ExpenseExportService.writeCsv(writer, row);
+
+        // Then
+        assertEquals("7,2025-03-01 10:00:00,\"Pizza, \"\"Margherita\"\"\",NO_CATEGORY_GENERAL,30.00,PLN,2,bartek,"
+                + "false,anna=15.00; bartek=15.00\n", writer.toString());
+    }
+
+    @Test
+    void testCsvText() {
+        assertEquals("", ExpenseExportService.csvText(null));
+        assertEquals("Zakupy", ExpenseExportService.csvText("Zakupy"));
+        assertEquals("\"a\nb\"", ExpenseExportService.csvText("a\nb"));
+        assertEquals("'=SUM(A1:A9)", ExpenseExportService.csvText("=SUM(A1:A9)"));
+        assertEquals("\"'=1,2\"", ExpenseExportService.csvText("=1,2"));
+    }
+
+    @Test
+    void testResolveFormat() {
+        assertEquals(ExpenseExportFormat.CSV, ExpenseExportFormat.resolve(null));
+        assertEquals(ExpenseExportFormat.NDJSON, ExpenseExportFormat.resolve(" NDJSON "));
+        assertThrows(IllegalArgumentException.class, () -> ExpenseExportFormat.resolve("xlsx"));
+    }
+}
@@ -0,0 +1,172 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.config.FieldSelection;
+import com.janis.komornikgpt.group.Group;
+import com.janis.komornikgpt.group.GroupDto;
+import com.janis.komornikgpt.group.GroupRepository;
+import com.janis.komornikgpt.group.GroupService;
+import com.janis.komornikgpt.user.User;
+import com.janis.komornikgpt.user.UserDto;
+import com.janis.komornikgpt.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Czas składania listy wydatków użytkownika (50 grup, 10 000 wydatków): grupowanie po encji Group i GroupDto
+ * kontra grupowanie po id grupy. Repozytoria są zamockowane, mierzone jest tylko składanie odpowiedzi.
+ * Uruchomienie: {@code mvn test -Dtest=ExpenseFeedBenchmarkTest -Dbenchmark=true}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExpenseFeedBenchmarkTest {
+
+    private static final int GROUPS = 50;
+    private static final int MEMBERS = 8;
+    private static final int EXPENSES = 10_000;
+    private static final int SPLITS = 3;
+    private static final int WARM_UP = 10;
+    private static final int ROUNDS = 30;
+
+    private final List<User> users = new ArrayList<>();
+    private final List<Group> groups = new ArrayList<>();
+    private final List<Expense> expenses = new ArrayList<>();
+
+    @Test
+    void compareGroupingByEntityAndById() {
+        // Given
+        createData();
+        ExpenseService expenseService = serviceReturningRows();
+
+        // When
+        System.out.printf("%-24s %8s %12s%n", "variant", "groups", "us/op");
+        int legacyGroups = measure("group entity keys", () -> legacyFeed().size());
+        int groupsById = measure("group id keys", () -> expenseService.findAllByPayerId(1L, FieldSelection.ALL).byGroup().size());
+        measure("grouping only: entity", () -> expenses.stream()
+                .collect(Collectors.groupingBy(Expense::getGroup)).size());
+        measure("grouping only: id", () -> expenses.stream()
+                .collect(Collectors.groupingBy(e -> e.getGroup().getId())).size());
+
+        // Then
+        assertEquals(GROUPS, legacyGroups);
+        assertEquals(GROUPS, groupsById);
+    }
+
+    /**
+     * The feed as it was assembled before: expenses grouped by the Group entity, then re-keyed by GroupDto.
+     */
+    private Map<GroupDto, List<ExpenseDto>> legacyFeed() {
+        Map<Group, List<Expense>> byGroup = expenses.stream()
+                .filter(e -> e.getGroup() != null)
+                .collect(Collectors.groupingBy(Expense::getGroup));
+        return byGroup.entrySet().stream()
+                .collect(Collectors.toMap(
+                        entry -> GroupDto.fromGroup(entry.getKey()),
+                        entry -> entry.getValue().stream().map(ExpenseDto::fromExpense).toList()));
+    }
+
+    private ExpenseService serviceReturningRows() {
+        ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        GroupRepository groupRepository = mock(GroupRepository.class);
+
+        List<ExpenseRow> rows = expenses.stream()
+                .map(e -> new ExpenseRow(e.getId(), e.getDescription(), e.getAmount(), e.getCurrency(), e.getDate(),
+                        e.getPayer().getId(), e.getGroup().getId(), e.getCreatedAt(), e.getUpdatedAt(), e.getPaid(),
+                        e.getCategory()))
+                .toList();
+        Map<Long, List<ExpenseSplitRow>> splitRows = expenses.stream()
+                .collect(Collectors.toMap(Expense::getId, e -> e.getSplits().stream()
+                        .map(s -> new ExpenseSplitRow(e.getId(), s.getId(), s.getUser().getId(), s.getAmountOwed()))
+                        .toList()));
+        List<UserDto> userDtos = users.stream().map(UserDto::fromUser).toList();
+
+        when(expenseRepository.findRowsByPayerIdAfter(anyLong(), any(), anyLong(), any())).thenReturn(rows);
+        when(expenseRepository.findSplitRowsByExpenseIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().flatMap(id -> splitRows.get(id).stream()).toList();
+        });
+        when(userRepository.findDtosByIdIn(anyCollection())).thenReturn(userDtos);
+        when(groupRepository.findAllWithMembersByIdIn(anyCollection())).thenReturn(groups);
+
+        return new ExpenseService(expenseRepository, userRepository, groupRepository, mock(GroupService.class),
+                mock(NBPExchangeService.class), mock(GroupBalanceService.class));
+    }
+
+    /**
+     * User 1 pays every expense and belongs to all groups; every group has its own other members.
+     */
+    private void createData() {
+        Random random = new Random(7);
+        User payer = user(1L);
+        users.add(payer);
+        long userId = 2;
+        for (long groupId = 1; groupId <= GROUPS; groupId++) {
+            List<User> members = new ArrayList<>(List.of(payer));
+            for (int i = 1; i < MEMBERS; i++) {
+                User member = user(userId++);
+                users.add(member);
+                members.add(member);
+            }
+            Group group = new Group();
+            group.setId(groupId);
+            group.setName("Grupa " + groupId);
+            group.setUsers(members);
+            group.setCreatedBy(payer);
+            group.setCurrencies(new ArrayList<>(List.of(Currency.PLN, Currency.EUR)));
+            groups.add(group);
+        }
+
+        LocalDateTime date = LocalDateTime.of(2025, 6, 30, 12, 0);
+        long splitId = 1;
+        for (long id = EXPENSES; id >= 1; id--) {
+            Group group = groups.get(random.nextInt(GROUPS));
+            Expense expense = new Expense();
+            expense.setId(id);
+            expense.setDescription("Wydatek " + id);
+            expense.setAmount(BigDecimal.valueOf(SPLITS * 1000L, 2));
+            expense.setDate(date.minusHours(EXPENSES - id));
+            expense.setPayer(payer);
+            expense.setGroup(group);
+            for (int i = 0; i < SPLITS; i++) {
+                ExpenseSplit split = new ExpenseSplit();
+                split.setId(splitId++);
+                split.setExpense(expense);
+                split.setUser(group.getUsers().get(i));
+                split.setAmountOwed(BigDecimal.valueOf(1000, 2));
+                expense.getSplits().add(split);
+            }
+            expenses.add(expense);
+        }
+    }
+
+    private static User user(long id) {
+        return User.builder().id(id).username("user" + id).email("user" + id + "@example.com").build();
+    }
+
+    private static int measure(String variant, Supplier<Integer> feed) {
+        int groups = 0;
+        for (int i = 0; i < WARM_UP; i++) {
+            groups = feed.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            feed.get();
+        }
+        System.out.printf("%-24s %8d %12d%n", variant, groups, (System.nanoTime() - start) / ROUNDS / 1000);
+        return groups;
+    }
+}
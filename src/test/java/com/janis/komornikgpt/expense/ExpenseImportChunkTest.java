@@ -0,0 +1,144 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.group.GroupRepository;
+import com.janis.komornikgpt.user.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The write pass of {@link ExpenseImportService} against PostgreSQL: more than {@value ExpenseImportService#CHUNK_SIZE}
+ * rows are committed in chunks, ids reserved from the sequences must not collide with the blocks of Hibernate's pooled
+ * optimizer, and paid rows must stay out of the balance ledger. The imported expenses are deleted and the ledger of the
+ * group is rebuilt afterwards. Needs a group with at least two members and a consistent ledger. Run with
+ * {@code mvn test -Dtest=ExpenseImportChunkTest -Ddatabase=true -Ddatabase.group-id=1 -Dspring.profiles.active=local}
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "database", matches = "true")
+class ExpenseImportChunkTest {
+
+    private static final int ROWS = ExpenseImportService.CHUNK_SIZE + 1;
+
+    @Autowired
+    private ExpenseImportService expenseImportService;
+    @Autowired
+    private ExpenseService expenseService;
+    @Autowired
+    private GroupBalanceService groupBalanceService;
+    @Autowired
+    private GroupRepository groupRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final String description = "Import " + UUID.randomUUID();
+    private long groupId;
+    private List<User> members;
+
+    @BeforeEach
+    void setUp() {
+        groupId = Long.getLong("database.group-id", 1L);
+        members = new TransactionTemplate(transactionManager).execute(status ->
+                List.copyOf(groupRepository.findById(groupId).orElseThrow().getUsers()));
+        assumeTrue(members.size() >= 2, "Grupa " + groupId + " ma mniej niż dwóch członków");
+        assumeTrue(groupBalanceService.verify(groupId).isEmpty(), "Saldo grupy " + groupId + " już się rozjechało");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("""
+                DELETE FROM expense_splits WHERE expense_id IN (SELECT id FROM expenses WHERE description = ?)
+                """, description);
+        jdbcTemplate.update("DELETE FROM expenses WHERE description = ?", description);
+        groupBalanceService.rebuild(groupId);
+    }
+
+    @Test
+    void testImportCommitsChunksWithPooledIds() throws IOException {
+        // Given: Hibernate holds a block of ids taken before the import
+        Ids before = createAndRollBack();
+        long version = groupRepository.findDataVersion(groupId);
+
+        // When
+        ExpenseImportResult result = expenseImportService.importCsv(groupId, new ByteArrayResource(csv()), false);
+
+        // Then
+        assertEquals(new ExpenseImportResult(ROWS, ROWS, 0, List.of()), result);
+        List<Long> expenseIds = jdbcTemplate.queryForList(
+                "SELECT id FROM expenses WHERE description = ?", Long.class, description);
+        List<Long> splitIds = jdbcTemplate.queryForList("""
+                SELECT s.id FROM expense_splits s JOIN expenses e ON e.id = s.expense_id WHERE e.description = ?
+                """, Long.class, description);
+        assertEquals(ROWS, new HashSet<>(expenseIds).size());
+        assertEquals(2 * ROWS, new HashSet<>(splitIds).size());
+        // One transaction and one bump per chunk
+        assertEquals(version + Math.ceilDiv(ROWS, ExpenseImportService.CHUNK_SIZE),
+                groupRepository.findDataVersion(groupId));
+        // Paid rows added to the ledger would show up as drift
+        assertEquals(List.of(), groupBalanceService.verify(groupId));
+
+        Ids after = createAndRollBack();
+        for (Ids created : List.of(before, after)) {
+            assertFalse(expenseIds.contains(created.expenseId()), "expense " + created.expenseId());
+            assertTrue(created.splitIds().stream().noneMatch(splitIds::contains), "splits " + created.splitIds());
+        }
+    }
+
+    /**
+     * Every tenth row is paid and every third is in EUR, each split equally between the first two members.
+     */
+    private byte[] csv() {
+        String payer = members.get(0).getUsername();
+        String other = members.get(1).getUsername();
+        StringBuilder csv = new StringBuilder("date,description,amount,currency,payer,splits,paid\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append("2025-03-01 10:00,").append(description).append(',').append(10 + i % 7).append(".01,")
+                    .append(i % 3 == 0 ? "EUR" : "PLN").append(',').append(i % 2 == 0 ? payer : other).append(',')
+                    .append(payer).append("; ").append(other).append(',').append(i % 10 == 0).append('\n');
+        }
+        return csv.toString().getBytes(UTF_8);
+    }
+
+    private Ids createAndRollBack() {
+        Principal principal = members.getFirst()::getUsername;
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            ExpenseDto expense = expenseService.createExpense(new CreateExpenseRequest("Po imporcie",
+                    new BigDecimal("20.00"), Currency.PLN, LocalDateTime.now(), members.get(0).getId(), groupId,
+                    List.of(new CreateExpenseRequest.ExpenseSplitRequest(members.get(0).getId(), BigDecimal.TEN),
+                            new CreateExpenseRequest.ExpenseSplitRequest(members.get(1).getId(), BigDecimal.TEN)),
+                    ExpenseCategory.NO_CATEGORY_GENERAL), principal);
+            entityManager.flush();
+            status.setRollbackOnly();
+            return new Ids(expense.id(), expense.splits().stream().map(split -> split.id())
+                    .collect(Collectors.toSet()));
+        });
+    }
+
+    private record Ids(Long expenseId, Set<Long> splitIds) {
+    }
+}
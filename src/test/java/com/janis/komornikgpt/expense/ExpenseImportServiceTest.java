@@ -0,0 +1,118 @@
+package com.janis.komornikgpt.expense;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseImportServiceTest {
+
+    private static final List<String> HEADER = List.of("id", "date", "description", "amount", "payer", "splits");
+    private final ExpenseImportService.RowParser parser =
+            ExpenseImportService.RowParser.of(HEADER, Map.of("anna", 1L, "bartek", 2L, "celina", 3L), Currency.PLN);
+
+    @Test
+    void testCsvRecords() throws IOException {
+        // Given
+        CsvRecordReader reader = new CsvRecordReader(new StringReader(
+                "\uFEFFdate,description\r\n2025-03-01,\"Pizza, \"\"Margherita\"\"\"\n2025-03-02,\"dwie\nlinie\"\n"));
+
+        // When
+        List<String> header = reader.next();
+        List<String> first = reader.next();
+        List<String> second = reader.next();
+
+        // Then
+        assertEquals(List.of("date", "description"), header);
+        assertEquals(List.of("2025-03-01", "Pizza, \"Margherita\""), first);
+        assertEquals(List.of("2025-03-02", "dwie\nlinie"), second);
+        assertEquals(3, reader.recordLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void testParseExportedRow() {
+        // When
+        ExpenseImportService.ImportedExpense expense = parser.parse(
+                List.of("7", "2025-03-01 10:00:00", "'=Pizza", "30,00", "bartek", "anna=15.00; bartek=15.00"));
+
+        // Then
+        assertEquals(LocalDateTime.of(2025, 3, 1, 10, 0), expense.date());
+        assertEquals("=Pizza", expense.description());
+        assertEquals(new BigDecimal("30.00"), expense.amount());
+        assertEquals(Currency.PLN, expense.currency());
+        assertEquals(ExpenseCategory.NO_CATEGORY_GENERAL, expense.category());
+        assertEquals(2L, expense.payerId());
+        assertFalse(expense.paid());
+        assertEquals(List.of(new ExpenseImportService.ImportedSplit(1L, new BigDecimal("15.00")),
+                new ExpenseImportService.ImportedSplit(2L, new BigDecimal("15.00"))), expense.splits());
+    }
+
+    @Test
+    void testEqualSplitGivesLeftoverCentsToFirstUsers() {
+        ExpenseImportService.ImportedExpense expense =
+                parser.parse(List.of("", "2025-03-01", "Taksówka", "10", "anna", "anna; bartek; celina"));
+
+        assertEquals(List.of(new BigDecimal("3.34"), new BigDecimal("3.33"), new BigDecimal("3.33")),
+                expense.splits().stream().map(ExpenseImportService.ImportedSplit::amountOwed).toList());
+    }
+
+    @Test
+    void testEqualSplitOfZeroDigitCurrencyStaysWhole() {
+        // Given
+        ExpenseImportService.RowParser withCurrency = ExpenseImportService.RowParser.of(
+                List.of("date", "description", "amount", "currency", "payer", "splits"),
+                Map.of("anna", 1L, "bartek", 2L, "celina", 3L), Currency.PLN);
+
+        // When
+        ExpenseImportService.ImportedExpense expense =
+                withCurrency.parse(List.of("2025-03-01", "Sushi", "1000", "jpy", "anna", "anna; bartek; celina"));
+
+        // Then
+        assertEquals(Currency.JPY, expense.currency());
+        assertEquals(List.of(new BigDecimal("334"), new BigDecimal("333"), new BigDecimal("333")),
+                expense.splits().stream().map(ExpenseImportService.ImportedSplit::amountOwed).toList());
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> withCurrency.parse(
+                List.of("2025-03-01", "Sushi", "1000.50", "JPY", "anna", "anna; bartek")));
+        assertEquals("Kwota ma więcej miejsc po przecinku, niż pozwala waluta JPY (0): 1000.50", e.getMessage());
+        e = assertThrows(IllegalArgumentException.class, () -> withCurrency.parse(
+                List.of("2025-03-01", "Sushi", "1000", "JPY", "anna", "anna=500.5; bartek=499.5")));
+        assertEquals("Kwota ma więcej miejsc po przecinku, niż pozwala waluta JPY (0): 500.5", e.getMessage());
+    }
+
+    @Test
+    void testRejectedRows() {
+        assertRejected("Użytkownik zenon nie należy do grupy", "anna", "anna=10.00; zenon=10.00");
+        assertRejected("Suma podziału 15.00 różni się od kwoty 20.00", "anna", "anna=10.00; bartek=5.00");
+        assertRejected("Kwota ma więcej miejsc po przecinku, niż pozwala waluta PLN (2): 10.005", "anna",
+                "anna=10.005; bartek=9.995");
+        assertRejected("Brak płacącego", "", "anna");
+        assertRejected("Kwota podziału użytkownika anna musi być dodatnia: -5.00", "anna",
+                "anna=-5.00; bartek=25.00");
+        assertRejected("Kwota podziału użytkownika bartek musi być dodatnia: 0.00", "anna", "anna=20.00; bartek=0");
+        assertRejected("Kwota podziału użytkownika celina musi być dodatnia: 0.00", "anna", "anna; bartek; celina",
+                "0.02");
+        assertRejected("Użytkownik anna występuje w podziale więcej niż raz", "anna", "anna=10.00; anna=10.00");
+        assertRejected("Użytkownik anna występuje w podziale więcej niż raz", "bartek", "anna; bartek; anna");
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(List.of("", "01.03.2025", "Kino", "20", "anna", "anna")));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExpenseImportService.RowParser.of(List.of("date", "amount"), Map.of(), Currency.PLN));
+    }
+
+    private void assertRejected(String message, String payer, String splits) {
+        assertRejected(message, payer, splits, "20.00");
+    }
+
+    private void assertRejected(String message, String payer, String splits, String amount) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(List.of("", "2025-03-01", "Kino", amount, payer, splits)));
+        assertEquals(message, e.getMessage());
+    }
+}
@@ -0,0 +1,81 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.config.SparseFieldsetAdvice;
+import com.janis.komornikgpt.group.GroupDto;
+import com.janis.komornikgpt.user.UserDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Rozmiar i czas serializacji listy wydatków grupy w formacie pełnym i kompaktowym (20 członków, 1000 wydatków).
+ * Uruchomienie: {@code mvn test -Dtest=ExpenseListingBenchmarkTest -Dbenchmark=true}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExpenseListingBenchmarkTest {
+
+    private static final int MEMBERS = 20;
+    private static final int EXPENSES = 1000;
+    private static final int SPLITS = 5;
+    private static final int WARM_UP = 30;
+    private static final int ROUNDS = 100;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().filterProvider(SparseFieldsetAdvice.SERIALIZE_ALL).build();
+
+    @Test
+    void compareFullAndCompactPayloads() {
+        ExpenseListing listing = listing();
+
+        System.out.printf("%-10s %12s %12s%n", "format", "bytes", "us/op");
+        measure("full", () -> jsonMapper.writeValueAsBytes(listing.expenses()));
+        measure("compact", () -> jsonMapper.writeValueAsBytes(listing.compact()));
+    }
+
+    private ExpenseListing listing() {
+        Random random = new Random(7);
+        Map<Long, UserDto> users = new HashMap<>();
+        for (long id = 1; id <= MEMBERS; id++) {
+            users.put(id, new UserDto(id, "user" + id, "user" + id + "@example.com", "Imię" + id, "Nazwisko" + id, null));
+        }
+        GroupDto group = new GroupDto(1L, "Grupa", "Wspólne wydatki", List.copyOf(users.values()), users.get(1L),
+                LocalDateTime.of(2025, 1, 1, 0, 0), false, Currency.PLN, List.of(Currency.PLN, Currency.EUR), null);
+
+        List<ExpenseRow> rows = new ArrayList<>();
+        Map<Long, List<ExpenseSplitRow>> splits = new HashMap<>();
+        LocalDateTime date = LocalDateTime.of(2025, 6, 30, 12, 0);
+        long splitId = 1;
+        for (long id = EXPENSES; id >= 1; id--) {
+            LocalDateTime expenseDate = date.minusHours(EXPENSES - id);
+            rows.add(new ExpenseRow(id, "Wydatek " + id, BigDecimal.valueOf(SPLITS * 1000L, 2), Currency.PLN,
+                    expenseDate, 1L + random.nextInt(MEMBERS), 1L, expenseDate, expenseDate, false,
+                    ExpenseCategory.NO_CATEGORY_GENERAL));
+            List<ExpenseSplitRow> expenseSplits = new ArrayList<>();
+            for (int i = 0; i < SPLITS; i++) {
+                expenseSplits.add(new ExpenseSplitRow(id, splitId++, 1L + random.nextInt(MEMBERS), BigDecimal.valueOf(1000, 2)));
+            }
+            splits.put(id, expenseSplits);
+        }
+        return new ExpenseListing(rows, splits, users, Map.of(1L, group), null);
+    }
+
+    private static void measure(String format, Supplier<byte[]> serialize) {
+        int bytes = 0;
+        for (int i = 0; i < WARM_UP; i++) {
+            bytes = serialize.get().length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            serialize.get();
+        }
+        System.out.printf("%-10s %12d %12d%n", format, bytes, (System.nanoTime() - start) / ROUNDS / 1000);
+    }
+}
@@ -0,0 +1,92 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.group.GroupDto;
+import com.janis.komornikgpt.user.UserDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseListingTest {
+
+    private final UserDto anna = user(1L, "anna");
+    private final UserDto bartek = user(2L, "bartek");
+    private final UserDto celina = user(3L, "celina");
+    private final GroupDto group = new GroupDto(10L, "Wakacje", null, List.of(anna, bartek, celina), anna,
+            LocalDateTime.of(2025, 1, 1, 0, 0), false, Currency.PLN, List.of(Currency.PLN, Currency.EUR), null);
+
+    @Test
+    void testCompactReferencesUsersAndGroupsById() {
+        // Given
+        ExpenseListing listing = listing();
+
+        // When
+        CompactExpensesDto compact = listing.compact();
+
+        // Then
+        assertEquals(List.of(101L, 100L), compact.expenses().stream().map(CompactExpensesDto.CompactExpenseDto::id).toList());
+        CompactExpensesDto.CompactExpenseDto newest = compact.expenses().getFirst();
+        assertEquals(2L, newest.payerId());
+        assertEquals(10L, newest.groupId());
+        assertEquals(List.of(1L, 2L), newest.splits().stream().map(CompactExpensesDto.CompactSplitDto::userId).toList());
+        // Celina is only a member, she still has to be in the dictionary for memberIds
+        assertEquals(Map.of(1L, anna, 2L, bartek, 3L, celina), compact.users());
+        CompactExpensesDto.CompactGroupDto compactGroup = compact.groups().get(10L);
+        assertEquals(List.of(1L, 2L, 3L), compactGroup.memberIds());
+        assertEquals(1L, compactGroup.createdById());
+        assertEquals(List.of(Currency.PLN, Currency.EUR), compactGroup.currencies());
+    }
+
+    @Test
+    void testFullAndGroupedRenderingsShareTheSameDictionaries() {
+        // Given
+        ExpenseListing listing = listing();
+
+        // When
+        List<ExpenseDto> expenses = listing.expenses();
+        List<GroupExpensesDto> byGroup = listing.byGroup();
+
+        // Then
+        assertEquals(2, expenses.size());
+        assertSame(bartek, expenses.getFirst().payer());
+        assertSame(group, expenses.getFirst().group());
+        assertSame(anna, expenses.getFirst().splits().getFirst().user());
+        assertEquals(1, byGroup.size());
+        assertEquals(List.of(101L, 100L), byGroup.getFirst().expenses().stream().map(ExpenseDto::id).toList());
+    }
+
+    @Test
+    void testFormatResolution() {
+        assertEquals(ExpenseListFormat.FULL, ExpenseListFormat.resolve(null, null));
+        assertEquals(ExpenseListFormat.FULL, ExpenseListFormat.resolve(null, "application/json, */*"));
+        assertEquals(ExpenseListFormat.COMPACT, ExpenseListFormat.resolve(null,
+                "application/json;q=0.5, " + ExpenseListFormat.COMPACT_MEDIA_TYPE_VALUE));
+        assertEquals(ExpenseListFormat.COMPACT, ExpenseListFormat.resolve("Compact", null));
+        // The query parameter wins over the header
+        assertEquals(ExpenseListFormat.FULL, ExpenseListFormat.resolve("full", ExpenseListFormat.COMPACT_MEDIA_TYPE_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> ExpenseListFormat.resolve("xml", null));
+    }
+
+    private ExpenseListing listing() {
+        ExpenseRow older = row(100L, anna, LocalDateTime.of(2025, 3, 1, 10, 0));
+        ExpenseRow newer = row(101L, bartek, LocalDateTime.of(2025, 3, 2, 10, 0));
+        Map<Long, List<ExpenseSplitRow>> splits = Map.of(
+                100L, List.of(new ExpenseSplitRow(100L, 1000L, 2L, new BigDecimal("30.00"))),
+                101L, List.of(new ExpenseSplitRow(101L, 1001L, 1L, new BigDecimal("10.00")),
+                        new ExpenseSplitRow(101L, 1002L, 2L, new BigDecimal("10.00"))));
+        return new ExpenseListing(List.of(newer, older), splits, Map.of(1L, anna, 2L, bartek), Map.of(10L, group), null);
+    }
+
+    private static ExpenseRow row(Long id, UserDto payer, LocalDateTime date) {
+        return new ExpenseRow(id, "Wydatek " + id, new BigDecimal("20.00"), Currency.PLN, date, payer.getId(), 10L,
+                date, date, false, ExpenseCategory.NO_CATEGORY_GENERAL);
+    }
+
+    private static UserDto user(Long id, String username) {
+        return new UserDto(id, username, username + "@example.com", username, null, null);
+    }
+}
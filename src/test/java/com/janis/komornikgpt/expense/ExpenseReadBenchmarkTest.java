@@ -0,0 +1,81 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.config.FieldSelection;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Alokacje i czas odczytu listy wydatków grupy: zarządzane encje (graf Expense.details) kontra projekcje rekordów.
+ * Wymaga bazy z danymi, np. z docker-compose i profilem local.
+ * Uruchomienie: {@code mvn test -Dtest=ExpenseReadBenchmarkTest -Dbenchmark=true -Dbenchmark.group-id=1
+ * -Dspring.profiles.active=local}
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExpenseReadBenchmarkTest {
+
+    private static final int WARM_UP = 30;
+    private static final int ROUNDS = 100;
+    private static final LocalDateTime FROM = LocalDateTime.of(1900, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    @Autowired
+    private ExpenseService expenseService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void compareEntityAndProjectionReads() {
+        long groupId = Long.getLong("benchmark.group-id", 1L);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        System.out.printf("%-28s %10s %14s %12s%n", "variant", "expenses", "bytes/op", "us/op");
+        measure("entities (read-write tx)", () -> readWrite.execute(status -> loadEntities(groupId)));
+        measure("entities (read-only tx)", () -> readOnly.execute(status -> loadEntities(groupId)));
+        measure("record projections", () -> expenseService.findAllByGroupIdAndDateBetween(groupId, FROM, TO, FieldSelection.ALL).expenses());
+    }
+
+    private List<ExpenseDto> loadEntities(long groupId) {
+        return entityManager.createQuery("""
+                        SELECT e FROM Expense e
+                        WHERE e.group.id = :groupId AND e.date BETWEEN :from AND :to
+                        ORDER BY e.date DESC, e.id DESC""", Expense.class)
+                .setParameter("groupId", groupId)
+                .setParameter("from", FROM)
+                .setParameter("to", TO)
+                .setHint("jakarta.persistence.fetchgraph", entityManager.getEntityGraph(Expense.DETAILS_GRAPH))
+                .getResultStream()
+                .map(ExpenseDto::fromExpense)
+                .toList();
+    }
+
+    private void measure(String variant, Supplier<List<ExpenseDto>> read) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int size = 0;
+        for (int i = 0; i < WARM_UP; i++) {
+            size = read.get().size();
+        }
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            read.get();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("%-28s %10d %14d %12d%n", variant, size, allocated / ROUNDS, nanos / ROUNDS / 1000);
+    }
+}
@@ -0,0 +1,91 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.config.FieldSelection;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Number of JDBC statements of the expense reads, which must not depend on the number of expenses, splits or members.
+ * Needs a group with more than 100 expenses, e.g. the test data of the local profile. Run with
+ * {@code mvn test -Dtest=ExpenseReadStatementsTest -Ddatabase=true -Ddatabase.group-id=1
+ * -Dspring.profiles.active=local}
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@EnabledIfSystemProperty(named = "database", matches = "true")
+class ExpenseReadStatementsTest {
+
+    // Rows, splits, users, groups with their members and the batch of group currencies
+    private static final long LIST_STATEMENTS = 5;
+
+    @Autowired
+    private ExpenseService expenseService;
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private long groupId;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        groupId = Long.getLong("database.group-id", 1L);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void testGroupListStatementsDoNotDependOnExpenseCount() {
+        // Given
+        int total = expenseService.findAllByGroupId(groupId, FieldSelection.ALL).rows().size();
+        assumeTrue(total > 100, "Grupa " + groupId + " ma tylko " + total + " wydatków");
+
+        // When / Then
+        for (int limit : new int[]{1, 10, 100}) {
+            assertEquals(LIST_STATEMENTS, statements(() -> expenseService.findPageByGroupId(groupId,
+                    ExpenseCursor.FIRST, limit, FieldSelection.ALL).expenses()), "limit " + limit);
+        }
+        assertEquals(LIST_STATEMENTS, statements(() ->
+                expenseService.findAllByGroupId(groupId, FieldSelection.ALL).expenses()), total + " wydatków");
+    }
+
+    @Test
+    void testExpenseDetailIsOneStatement() {
+        // Given
+        Long id = expenseService.findPageByGroupId(groupId, ExpenseCursor.FIRST, 1, FieldSelection.ALL)
+                .rows().getFirst().id();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        // When
+        long statements = statements(() -> readOnly.execute(status ->
+                ExpenseDto.fromExpense(expenseRepository.findWithDetailsById(id).orElseThrow())));
+
+        // Then: payer, group, creator and splits with their users are joined, members and currencies are batch
+        // fetched
+        assertEquals(3, statements);
+    }
+
+    private long statements(Supplier<?> read) {
+        statistics.clear();
+        Object result = read.get();
+        assertFalse(result instanceof List<?> list && list.isEmpty());
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,82 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.group.GroupRepository;
+import com.janis.komornikgpt.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Keyset paging against PostgreSQL: the {@code (e.date, e.id) < (:date, :id)} row comparison must split expenses with
+ * the same date by id, without skipping or repeating any of them. The expenses are inserted into an existing group and
+ * rolled back. Requires a database, e.g. from docker-compose with the local profile. Run with
+ * {@code mvn test -Dtest=ExpenseRepositoryTest -Ddatabase=true -Ddatabase.group-id=1 -Dspring.profiles.active=local}
+ */
+@SpringBootTest
+@Transactional
+@EnabledIfSystemProperty(named = "database", matches = "true")
+class ExpenseRepositoryTest {
+
+    // Later than any real expense, so the inserted ones are the newest of the group
+    private static final LocalDateTime DATE = LocalDateTime.of(2999, 6, 1, 12, 0);
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    @Autowired
+    private GroupRepository groupRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testPagesSplitSameDateByIdDescending() {
+        // Given
+        long groupId = Long.getLong("database.group-id", 1L);
+        Long payerId = groupRepository.findById(groupId).orElseThrow().getUsers().getFirst().getId();
+        Long newest = insert(groupId, payerId, DATE.plusDays(1));
+        Long first = insert(groupId, payerId, DATE);
+        Long second = insert(groupId, payerId, DATE);
+        Long third = insert(groupId, payerId, DATE);
+        Long oldest = insert(groupId, payerId, DATE.minusDays(1));
+
+        // When
+        List<Long> byGroup = new ArrayList<>();
+        List<Long> byPayer = new ArrayList<>();
+        ExpenseCursor groupCursor = ExpenseCursor.FIRST;
+        ExpenseCursor payerCursor = ExpenseCursor.FIRST;
+        for (int page = 0; page < 3; page++) {
+            List<ExpenseRow> rows = expenseRepository.findRowsByGroupIdAfter(groupId, groupCursor.date(),
+                    groupCursor.id(), Limit.of(2));
+            rows.forEach(row -> byGroup.add(row.id()));
+            groupCursor = ExpenseCursor.decode(ExpenseCursor.after(rows.getLast()).encode());
+            rows = expenseRepository.findRowsByPayerIdAfter(payerId, payerCursor.date(), payerCursor.id(),
+                    Limit.of(2));
+            rows.forEach(row -> byPayer.add(row.id()));
+            payerCursor = ExpenseCursor.decode(ExpenseCursor.after(rows.getLast()).encode());
+        }
+
+        // Then
+        List<Long> expected = List.of(newest, third, second, first, oldest);
+        assertEquals(expected, byGroup.subList(0, 5));
+        assertEquals(expected, byPayer.subList(0, 5));
+    }
+
+    private Long insert(long groupId, Long payerId, LocalDateTime date) {
+        Expense expense = new Expense();
+        expense.setDescription("Stronicowanie");
+        expense.setAmount(BigDecimal.TEN);
+        expense.setDate(date);
+        expense.setPayer(userRepository.getReferenceById(payerId));
+        expense.setGroup(groupRepository.getReferenceById(groupId));
+        return expenseRepository.saveAndFlush(expense).getId();
+    }
+}
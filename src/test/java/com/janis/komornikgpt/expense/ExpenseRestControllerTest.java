@@ -0,0 +1,165 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.config.FieldSelection;
+import com.janis.komornikgpt.exception.GlobalExceptionHandler;
+import com.janis.komornikgpt.group.GroupETags;
+import com.janis.komornikgpt.group.GroupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.math.BigDecimal;
+import java.security.Principal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExpenseRestControllerTest {
+
+    private static final Principal USER = () -> "user1";
+
+    @Mock
+    private ExpenseSettlementService expenseSettlementService;
+    @Mock
+    private ExpenseService expenseService;
+    @Mock
+    private ExpenseExportService expenseExportService;
+    @Mock
+    private ExpenseImportService expenseImportService;
+    @Mock
+    private GroupRepository groupRepository;
+
+    private ExpenseRestController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new ExpenseRestController(expenseSettlementService, expenseService, expenseExportService,
+                expenseImportService, new GroupETags(groupRepository));
+    }
+
+    @Test
+    void testRecalculatedSettlementIsTaggedWithRateDate() {
+        // Given
+        when(groupRepository.findDataVersion(1L)).thenReturn(7L);
+        when(expenseSettlementService.getSettlementReport(1L, true, null)).thenReturn(report(false));
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        controller.getSettlement(1L, true, null, new ServletWebRequest(request(null), first));
+        String eTag = first.getHeader(HttpHeaders.ETAG);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        // When
+        ResponseEntity<List<SettlementDto>> response =
+                controller.getSettlement(1L, true, null, new ServletWebRequest(request(eTag), second));
+
+        // Then
+        assertTrue(eTag.startsWith("W/\"g1-v7-" + LocalDate.now() + "-"));
+        assertNull(response);
+        assertEquals(304, second.getStatus());
+    }
+
+    @Test
+    void testStaleRecalculationIsNotRevalidated() {
+        // Given
+        when(groupRepository.findDataVersion(1L)).thenReturn(7L);
+        when(expenseSettlementService.getSettlementReport(1L, true, null)).thenReturn(report(false), report(true));
+        MockHttpServletResponse fresh = new MockHttpServletResponse();
+        controller.getSettlement(1L, true, null, new ServletWebRequest(request(null), fresh));
+        MockHttpServletResponse stale = new MockHttpServletResponse();
+
+        // When
+        ResponseEntity<List<SettlementDto>> response = controller.getSettlement(1L, true, null,
+                new ServletWebRequest(request(fresh.getHeader(HttpHeaders.ETAG)), stale));
+
+        // Then
+        assertNotNull(response);
+        assertTrue(response.getBody().getFirst().isStale());
+        assertEquals(200, stale.getStatus());
+        assertNull(stale.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void testMalformedCursorIsBadRequest() throws Exception {
+        mockMvc().perform(get("/api/expenses/group/1").param("cursor", "nie*kursor").principal(USER))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Nieprawidłowy kursor stronicowania: nie*kursor"));
+
+        verifyNoInteractions(expenseService);
+    }
+
+    @Test
+    void testLimitBounds() throws Exception {
+        // Given
+        when(expenseService.findPageByGroupId(eq(1L), eq(ExpenseCursor.FIRST), anyInt(), any()))
+                .thenReturn(ExpenseListing.EMPTY);
+        MockMvc mockMvc = mockMvc();
+
+        // When
+        mockMvc.perform(get("/api/expenses/group/1").param("limit", "0").principal(USER))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/expenses/group/1").param("limit", "100000").principal(USER))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/expenses/group/1").param("cursor", "").principal(USER))
+                .andExpect(status().isOk());
+
+        // Then
+        verify(expenseService).findPageByGroupId(1L, ExpenseCursor.FIRST, ExpenseRestController.MAX_PAGE_SIZE,
+                FieldSelection.ALL);
+        verify(expenseService).findPageByGroupId(1L, ExpenseCursor.FIRST, ExpenseRestController.DEFAULT_PAGE_SIZE,
+                FieldSelection.ALL);
+    }
+
+    @Test
+    void testNextCursorHeaderOnlyWhenAnotherPageExists() throws Exception {
+        // Given
+        ExpenseCursor cursor = new ExpenseCursor(LocalDateTime.of(2025, 3, 1, 10, 0), 7L);
+        when(expenseService.findPageByGroupId(1L, cursor, 2, FieldSelection.ALL))
+                .thenReturn(new ExpenseListing(List.of(), Map.of(), Map.of(), Map.of(), "nastepna"));
+        when(expenseService.findPageByGroupId(1L, ExpenseCursor.FIRST, 2, FieldSelection.ALL))
+                .thenReturn(ExpenseListing.EMPTY);
+        MockMvc mockMvc = mockMvc();
+
+        // When / Then
+        mockMvc.perform(get("/api/expenses/group/1").param("limit", "2").param("cursor", cursor.encode())
+                        .principal(USER))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ExpenseRestController.NEXT_CURSOR_HEADER, "nastepna"));
+        mockMvc.perform(get("/api/expenses/group/1").param("limit", "2").principal(USER))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ExpenseRestController.NEXT_CURSOR_HEADER));
+    }
+
+    private MockMvc mockMvc() {
+        return MockMvcBuilders.standaloneSetup(controller).setControllerAdvice(new GlobalExceptionHandler()).build();
+    }
+
+    private static SettlementReport report(boolean stale) {
+        return new SettlementReport(List.of(new SettlementDto("Anna", "Bartek", new BigDecimal("10.00"), Currency.PLN,
+                stale)), SettlementAlgorithm.EXACT, stale);
+    }
+
+    private static MockHttpServletRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/expenses/groups/1/settlement");
+        request.setQueryString("recalculate=true");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,232 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.config.FieldSelection;
+import com.janis.komornikgpt.exception.GroupNotFoundException;
+import com.janis.komornikgpt.group.Group;
+import com.janis.komornikgpt.group.GroupRepository;
+import com.janis.komornikgpt.group.GroupService;
+import com.janis.komornikgpt.user.User;
+import com.janis.komornikgpt.user.UserDto;
+import com.janis.komornikgpt.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.math.BigDecimal;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExpenseServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2025, 12, 31, 0, 0);
+    private static final Principal USER1 = () -> "user1";
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private GroupRepository groupRepository;
+    @Mock
+    private GroupService groupService;
+    @Mock
+    private NBPExchangeService nbpExchangeService;
+    @Mock
+    private GroupBalanceService groupBalanceService;
+
+    @InjectMocks
+    private ExpenseService expenseService;
+
+    @Test
+    void testUnselectedAssociationsAreNotQueried() {
+        // Given
+        when(expenseRepository.findRowsByGroupIdAndDateBetween(1L, FROM, TO)).thenReturn(List.of(row(100L)));
+        UserDto payer = new UserDto(2L, "bartek", "bartek@example.com", null, null, null);
+        when(userRepository.findDtosByIdIn(Set.of(2L))).thenReturn(List.of(payer));
+
+        // When
+        List<ExpenseDto> expenses = expenseService.findAllByGroupIdAndDateBetween(1L, FROM, TO,
+                FieldSelection.parse("description,amount,date,payer", ExpenseDto.FIELDS)).expenses();
+
+        // Then
+        assertEquals(1, expenses.size());
+        assertSame(payer, expenses.getFirst().payer());
+        assertNull(expenses.getFirst().group());
+        assertEquals(List.of(), expenses.getFirst().splits());
+        verify(expenseRepository, never()).findSplitRowsByExpenseIdIn(anyCollection());
+        verify(groupRepository, never()).findAllWithMembersByIdIn(anyCollection());
+    }
+
+    @Test
+    void testNoUserQueryWithoutPayerAndSplits() {
+        // Given
+        when(expenseRepository.findRowsByGroupIdAndDateBetween(1L, FROM, TO)).thenReturn(List.of(row(100L)));
+
+        // When
+        List<ExpenseDto> expenses = expenseService.findAllByGroupIdAndDateBetween(1L, FROM, TO,
+                FieldSelection.parse("description,amount", ExpenseDto.FIELDS)).expenses();
+
+        // Then
+        assertEquals("Wydatek 100", expenses.getFirst().description());
+        verifyNoInteractions(userRepository, groupRepository);
+        verify(expenseRepository, never()).findSplitRowsByExpenseIdIn(anyCollection());
+    }
+
+    @Test
+    void testPageProbesOneRowMoreThanTheLimit() {
+        // Given
+        ExpenseCursor cursor = new ExpenseCursor(LocalDateTime.of(2025, 3, 2, 0, 0), 50L);
+        when(expenseRepository.findRowsByGroupIdAfter(1L, cursor.date(), cursor.id(), Limit.of(3)))
+                .thenReturn(List.of(row(40L), row(30L), row(20L)));
+
+        // When
+        ExpenseListing page = expenseService.findPageByGroupId(1L, cursor, 2,
+                FieldSelection.parse("description", ExpenseDto.FIELDS));
+
+        // Then
+        assertEquals(List.of(40L, 30L), page.rows().stream().map(ExpenseRow::id).toList());
+        assertEquals(ExpenseCursor.after(row(30L)), ExpenseCursor.decode(page.nextCursor()));
+    }
+
+    @Test
+    void testLastPageHasNoCursor() {
+        // Given
+        when(expenseRepository.findRowsByGroupIdAfter(1L, ExpenseCursor.FIRST.date(), ExpenseCursor.FIRST.id(),
+                Limit.of(3))).thenReturn(List.of(row(40L), row(30L)));
+
+        // When
+        ExpenseListing page = expenseService.findPageByGroupId(1L, ExpenseCursor.FIRST, 2,
+                FieldSelection.parse("description", ExpenseDto.FIELDS));
+
+        // Then
+        assertEquals(2, page.rows().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void testCreateExpenseRunsOneParticipantQueryForAnyNumberOfSplits() {
+        // Given
+        Long[] splitUserIds = LongStream.rangeClosed(2, 16).boxed().toArray(Long[]::new);
+        List<User> members = LongStream.rangeClosed(1, 16).mapToObj(ExpenseServiceTest::user).toList();
+        when(userRepository.findGroupMembers(eq(1L), eq("user1"), anyCollection())).thenReturn(members);
+        when(groupRepository.getReferenceById(1L)).thenReturn(group(1L));
+        when(expenseRepository.save(any(Expense.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        ExpenseDto expense = expenseService.createExpense(request(1L, splitUserIds), USER1);
+
+        // Then
+        assertEquals(1L, expense.payer().getId());
+        assertEquals(List.of(splitUserIds), expense.splits().stream().map(split -> split.user().getId()).toList());
+        verify(userRepository).findGroupMembers(1L, "user1", new LinkedHashSet<>(List.of(1L, 2L, 3L, 4L, 5L, 6L,
+                7L, 8L, 9L, 10L, 11L, 12L, 13L, 14L, 15L, 16L)));
+        verify(groupRepository).getReferenceById(1L);
+        verify(groupRepository).bumpDataVersion(1L);
+        verifyNoMoreInteractions(userRepository, groupRepository);
+        verifyNoInteractions(groupService);
+    }
+
+    @Test
+    void testUpdateExpenseRunsOneParticipantQuery() {
+        // Given
+        Expense existing = new Expense();
+        existing.setGroup(group(1L));
+        when(expenseRepository.findById(5L)).thenReturn(Optional.of(existing));
+        when(userRepository.findGroupMembers(eq(1L), eq("user1"), anyCollection()))
+                .thenReturn(List.of(user(1L), user(2L), user(3L)));
+        when(expenseRepository.save(existing)).thenReturn(existing);
+        UpdateExpenseRequest request = new UpdateExpenseRequest(3L, 1L, new BigDecimal("20"), Currency.PLN, "Kino",
+                FROM, List.of(new UpdateExpenseRequest.SplitDto(1L, BigDecimal.TEN),
+                new UpdateExpenseRequest.SplitDto(2L, BigDecimal.TEN)), ExpenseCategory.NO_CATEGORY_GENERAL);
+
+        // When
+        ExpenseDto expense = expenseService.updateExpense(5L, request, USER1);
+
+        // Then
+        assertEquals(3L, expense.payer().getId());
+        assertEquals(List.of(1L, 2L), expense.splits().stream().map(split -> split.user().getId()).toList());
+        verify(userRepository).findGroupMembers(eq(1L), eq("user1"), anyCollection());
+        verify(groupRepository).bumpDataVersion(1L);
+        verifyNoMoreInteractions(userRepository, groupRepository);
+        verifyNoInteractions(groupService);
+    }
+
+    @Test
+    void testCreateExpenseRejectsSplitUserOutsideGroup() {
+        // Given
+        when(userRepository.findGroupMembers(eq(1L), eq("user1"), anyCollection()))
+                .thenReturn(List.of(user(1L), user(2L)));
+
+        // When
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> expenseService.createExpense(request(1L, 2L, 9L), USER1));
+
+        // Then
+        assertEquals("Użytkownicy [9] nie należą do grupy 1", e.getMessage());
+        verifyNoInteractions(expenseRepository, groupBalanceService);
+    }
+
+    @Test
+    void testCreateExpenseRejectsCallerOutsideGroup() {
+        // Given
+        when(userRepository.findGroupMembers(eq(1L), eq("user1"), anyCollection())).thenReturn(List.of(user(2L)));
+        when(groupRepository.existsById(1L)).thenReturn(true);
+
+        // When / Then
+        assertThrows(AccessDeniedException.class, () -> expenseService.createExpense(request(2L, 2L), USER1));
+        verifyNoInteractions(expenseRepository, groupBalanceService);
+    }
+
+    @Test
+    void testCreateExpenseInMissingGroup() {
+        when(userRepository.findGroupMembers(eq(1L), eq("user1"), anyCollection())).thenReturn(List.of());
+        when(groupRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(GroupNotFoundException.class, () -> expenseService.createExpense(request(1L, 1L), USER1));
+    }
+
+    private static CreateExpenseRequest request(Long payerId, Long... splitUserIds) {
+        List<CreateExpenseRequest.ExpenseSplitRequest> splits = Arrays.stream(splitUserIds)
+                .map(id -> new CreateExpenseRequest.ExpenseSplitRequest(id, BigDecimal.TEN)).toList();
+        return new CreateExpenseRequest("Pizza", BigDecimal.TEN.multiply(BigDecimal.valueOf(splits.size())),
+                Currency.PLN, FROM, payerId, 1L, splits, ExpenseCategory.NO_CATEGORY_GENERAL);
+    }
+
+    private static Group group(Long id) {
+        Group group = new Group();
+        group.setId(id);
+        group.setUsers(new ArrayList<>(List.of(user(1L))));
+        group.setCreatedBy(user(1L));
+        return group;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        return user;
+    }
+
+    private static ExpenseRow row(Long id) {
+        LocalDateTime date = LocalDateTime.of(2025, 3, 1, 10, 0);
+        return new ExpenseRow(id, "Wydatek " + id, new BigDecimal("20.00"), Currency.PLN, date, 2L, 1L,
+                date, date, false, ExpenseCategory.NO_CATEGORY_GENERAL);
+    }
+}
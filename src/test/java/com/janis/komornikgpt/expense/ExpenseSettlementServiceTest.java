@@ -1,20 +1,24 @@
 package com.janis.komornikgpt.expense;
 
+import com.janis.komornikgpt.group.GroupRepository;
 import com.janis.komornikgpt.user.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -28,6 +32,18 @@ class ExpenseSettlementServiceTest {
     @Mock
     private NBPExchangeService nbpExchangeService;
 
+    @Mock
+    private GroupBalanceService groupBalanceService;
+
+    @Mock
+    private GroupRepository groupRepository;
+
+    @Spy
+    private SettlementStrategy settlementStrategy = new ExactSettlementStrategy(Duration.ofSeconds(1), 20);
+
+    @Spy
+    private SettlementCache settlementCache = new SettlementCache(new SimpleMeterRegistry(), 100);
+
     @InjectMocks
     private ExpenseSettlementService expenseSettlementService;
 
@@ -91,7 +107,7 @@ class ExpenseSettlementServiceTest {
         expenses.add(expense1);
         expenses.add(expense2);
 
-        when(expenseRepository.findAllByGroup_IdAndPaidFalse(groupId)).thenReturn(expenses);
+        when(groupBalanceService.findBalances(groupId)).thenReturn(ledgerOf(expenses));
 
         // When
         List<SettlementDto> result = expenseSettlementService.getSettlementDtos(groupId, false);
@@ -107,7 +123,7 @@ class ExpenseSettlementServiceTest {
 
         assertTrue(foundUser3ToUser1, "Nie znaleziono rozliczenia z Piotr do Jan na kwotę 100");
 
-        verify(expenseRepository).findAllByGroup_IdAndPaidFalse(groupId);
+        verify(groupBalanceService).findBalances(groupId);
     }
 
     @Test
@@ -122,7 +138,7 @@ class ExpenseSettlementServiceTest {
 
         expenses.add(expense1);
 
-        when(expenseRepository.findAllByGroup_IdAndPaidFalse(groupId)).thenReturn(expenses);
+        when(groupBalanceService.findBalances(groupId)).thenReturn(ledgerOf(expenses));
 
         // When
         List<Settlement> result = expenseSettlementService.processSettlementsForGroup(groupId, false);
@@ -147,7 +163,7 @@ class ExpenseSettlementServiceTest {
         assertTrue(foundSettlement1);
         assertTrue(foundSettlement2);
 
-        verify(expenseRepository).findAllByGroup_IdAndPaidFalse(groupId);
+        verify(groupBalanceService).findBalances(groupId);
         verifyNoInteractions(nbpExchangeService);
     }
 
@@ -155,37 +171,93 @@ class ExpenseSettlementServiceTest {
     void testProcessSettlementsForGroupWithRecalculation() {
         // Given
         Long groupId = 1L;
+        LocalDate march = LocalDate.of(2025, 3, 3);
+        LocalDate july = LocalDate.of(2025, 7, 1);
 
         Expense expensePLN = createExpense(1L, user1, BigDecimal.valueOf(100), pln);
+        expensePLN.setDate(march.atTime(10, 0));
         addExpenseSplit(expensePLN, user1, BigDecimal.valueOf(50));
         addExpenseSplit(expensePLN, user2, BigDecimal.valueOf(50));
 
         Expense expenseEUR = createExpense(2L, user2, BigDecimal.valueOf(50), eur);
+        expenseEUR.setDate(march.atTime(18, 30));
         addExpenseSplit(expenseEUR, user1, BigDecimal.valueOf(25));
         addExpenseSplit(expenseEUR, user2, BigDecimal.valueOf(25));
 
+        Expense laterEUR = createExpense(3L, user1, BigDecimal.valueOf(20), eur);
+        laterEUR.setDate(july.atTime(12, 0));
+        addExpenseSplit(laterEUR, user2, BigDecimal.valueOf(20));
+
         expenses.add(expensePLN);
         expenses.add(expenseEUR);
+        expenses.add(laterEUR);
 
-        when(expenseRepository.findAllByGroup_IdAndPaidFalse(groupId)).thenReturn(expenses);
-        // Użycie doReturn zamiast when dla uniknięcia problemu z dokładnością liczb zmiennoprzecinkowych
-        doReturn(BigDecimal.valueOf(100)).when(nbpExchangeService).convertToPln(any(BigDecimal.class), eq(eur));
+        when(expenseRepository.sumUnpaidPaidPerDayByGroupId(groupId)).thenReturn(paidPerDayOf(expenses));
+        when(expenseRepository.sumUnpaidOwedPerDayByGroupId(groupId)).thenReturn(owedPerDayOf(expenses));
+        // W marcu 1 EUR = 4 PLN, w lipcu 1 EUR = 5 PLN
+        doReturn(new DatedRates(Map.of(eur, Map.of(march, BigDecimal.valueOf(4), july, BigDecimal.valueOf(5))), false))
+                .when(nbpExchangeService).rates(anyMap());
 
         // When
         List<Settlement> result = expenseSettlementService.processSettlementsForGroup(groupId, true);
 
         // Then
+        // user1: +100 - 50 PLN, -25 EUR po 4 PLN, +20 EUR po 5 PLN = +50 PLN
         assertEquals(1, result.size());
         Settlement settlement = result.get(0);
 
         // Porównujemy na podstawie ID, zamiast bezpośrednio obiekty User
-        assertEquals(user1.getId(), settlement.from().getId());
-        assertEquals(user2.getId(), settlement.to().getId());
+        assertEquals(user2.getId(), settlement.from().getId());
+        assertEquals(user1.getId(), settlement.to().getId());
         assertEquals(BigDecimal.valueOf(50).stripTrailingZeros(), settlement.amount().stripTrailingZeros());
         assertEquals(pln, settlement.currency());
 
-        verify(expenseRepository).findAllByGroup_IdAndPaidFalse(groupId);
-        verify(nbpExchangeService).convertToPln(any(BigDecimal.class), eq(eur));
+        // Jeden zestaw kursów na całe rozliczenie, po jednym kursie na walutę i dzień
+        verify(nbpExchangeService).rates(Map.of(pln, Set.of(march), eur, Set.of(march, july)));
+        verify(nbpExchangeService, never()).convertToPln(any(BigDecimal.class), any(Currency.class));
+        verifyNoInteractions(groupBalanceService);
+    }
+
+    @Test
+    void testRecalculatedSettlementUsesGroupDefaultCurrency() {
+        // Given
+        Long groupId = 1L;
+        LocalDate march = LocalDate.of(2025, 3, 3);
+        Currency jpy = Currency.JPY;
+
+        Expense expensePLN = createExpense(1L, user1, BigDecimal.valueOf(100), pln);
+        expensePLN.setDate(march.atTime(10, 0));
+        addExpenseSplit(expensePLN, user1, BigDecimal.valueOf(50));
+        addExpenseSplit(expensePLN, user2, BigDecimal.valueOf(50));
+
+        Expense expenseJPY = createExpense(2L, user2, BigDecimal.valueOf(1000), jpy);
+        expenseJPY.setDate(march.atTime(12, 0));
+        addExpenseSplit(expenseJPY, user3, BigDecimal.valueOf(1000));
+
+        expenses.add(expensePLN);
+        expenses.add(expenseJPY);
+
+        when(groupRepository.findDefaultCurrency(groupId)).thenReturn(Optional.of(eur));
+        when(expenseRepository.sumUnpaidPaidPerDayByGroupId(groupId)).thenReturn(paidPerDayOf(expenses));
+        when(expenseRepository.sumUnpaidOwedPerDayByGroupId(groupId)).thenReturn(owedPerDayOf(expenses));
+        // 1 EUR = 4 PLN, 100 JPY = 2.60 PLN
+        doReturn(new DatedRates(Map.of(eur, Map.of(march, BigDecimal.valueOf(4)),
+                jpy, Map.of(march, new BigDecimal("0.026"))), false))
+                .when(nbpExchangeService).rates(anyMap());
+
+        // When
+        List<SettlementDto> result = expenseSettlementService.getSettlementReport(groupId, true, null).settlements();
+
+        // Then
+        // Bilanse: user1 +50 PLN = +12.50 EUR, user2 -50 PLN + 26 PLN = -6.00 EUR, user3 -1000 JPY = -26 PLN = -6.50 EUR
+        assertEquals(2, result.size());
+        assertTrue(result.stream().allMatch(dto -> dto.getCurrency() == eur));
+        Map<String, BigDecimal> amounts = new HashMap<>();
+        result.forEach(dto -> amounts.put(dto.getFrom() + "->" + dto.getTo(), dto.getAmount()));
+        assertEquals(Map.of("Anna->Jan", new BigDecimal("6.00"), "Piotr->Jan", new BigDecimal("6.50")), amounts);
+
+        // Kurs waluty docelowej jest potrzebny na każdy dzień wydatków
+        verify(nbpExchangeService).rates(Map.of(pln, Set.of(march), jpy, Set.of(march), eur, Set.of(march)));
     }
 
     @Test
@@ -256,6 +328,33 @@ class ExpenseSettlementServiceTest {
 
         verify(expenseRepository).findAllByGroup_IdAndPaidFalse(groupId);
         verify(expenseRepository).saveAll(anyList());
+        verify(groupBalanceService).clearGroup(groupId);
+        verify(groupRepository).bumpDataVersion(groupId);
+    }
+
+    @Test
+    void testSettlementIsCachedUntilGroupVersionChanges() {
+        // Given
+        Long groupId = 1L;
+
+        Expense expense1 = createExpense(1L, user1, BigDecimal.valueOf(300), pln);
+        addExpenseSplit(expense1, user2, BigDecimal.valueOf(150));
+        addExpenseSplit(expense1, user3, BigDecimal.valueOf(150));
+        expenses.add(expense1);
+
+        when(groupBalanceService.findBalances(groupId)).thenReturn(ledgerOf(expenses));
+        when(groupRepository.findDataVersion(groupId)).thenReturn(1L, 1L, 2L);
+
+        // When
+        List<SettlementDto> first = expenseSettlementService.getSettlementDtos(groupId, false);
+        List<SettlementDto> second = expenseSettlementService.getSettlementDtos(groupId, false);
+        expenseSettlementService.getSettlementDtos(groupId, false);
+
+        // Then
+        assertEquals(2, first.size());
+        assertSame(first, second);
+        // Drugie zapytanie obsłużone z cache, trzecie po zmianie wersji grupy liczone od nowa
+        verify(groupBalanceService, times(2)).findBalances(groupId);
     }
 
     @Test
@@ -280,7 +379,7 @@ class ExpenseSettlementServiceTest {
         expenses.add(expenseEUR);
         expenses.add(expenseCZK);
 
-        when(expenseRepository.findAllByGroup_IdAndPaidFalse(groupId)).thenReturn(expenses);
+        when(groupBalanceService.findBalances(groupId)).thenReturn(ledgerOf(expenses));
 
         // When
         List<Settlement> result = expenseSettlementService.processSettlementsForGroup(groupId, false);
@@ -305,7 +404,7 @@ class ExpenseSettlementServiceTest {
         // Wynik będzie różny w zależności od algorytmu, więc nie możemy dokładnie określić
         // oczekiwanej liczby rozliczeń, ale każda waluta powinna być reprezentowana
 
-        verify(expenseRepository).findAllByGroup_IdAndPaidFalse(groupId);
+        verify(groupBalanceService).findBalances(groupId);
     }
 
     @Test
@@ -336,6 +435,47 @@ class ExpenseSettlementServiceTest {
         return expense;
     }
 
+    private List<UserCurrencyDayTotal> paidPerDayOf(List<Expense> expenses) {
+        Map<String, UserCurrencyDayTotal> totals = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            addToDayTotals(totals, expense.getPayer(), expense, expense.getAmount());
+        }
+        return new ArrayList<>(totals.values());
+    }
+
+    private List<UserCurrencyDayTotal> owedPerDayOf(List<Expense> expenses) {
+        Map<String, UserCurrencyDayTotal> totals = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            for (ExpenseSplit split : expense.getSplits()) {
+                addToDayTotals(totals, split.getUser(), expense, split.getAmountOwed());
+            }
+        }
+        return new ArrayList<>(totals.values());
+    }
+
+    private void addToDayTotals(Map<String, UserCurrencyDayTotal> totals, User user, Expense expense, BigDecimal amount) {
+        LocalDate day = expense.getDate().toLocalDate();
+        totals.merge(user.getId() + ":" + expense.getCurrency() + ":" + day,
+                new UserCurrencyDayTotal(user.getId(), user.getName(), expense.getCurrency(), day, amount),
+                (a, b) -> new UserCurrencyDayTotal(a.userId(), a.userName(), a.currency(), day, a.amount().add(b.amount())));
+    }
+
+    private List<MemberBalance> ledgerOf(List<Expense> expenses) {
+        Map<String, MemberBalance> ledger = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            addToLedger(ledger, expense.getPayer(), expense.getCurrency(), expense.getAmount());
+            for (ExpenseSplit split : expense.getSplits()) {
+                addToLedger(ledger, split.getUser(), expense.getCurrency(), split.getAmountOwed().negate());
+            }
+        }
+        return new ArrayList<>(ledger.values());
+    }
+
+    private void addToLedger(Map<String, MemberBalance> ledger, User user, Currency currency, BigDecimal amount) {
+        ledger.merge(user.getId() + ":" + currency, new MemberBalance(user.getId(), user.getName(), currency, amount),
+                (a, b) -> new MemberBalance(a.userId(), a.userName(), currency, a.amount().add(b.amount())));
+    }
+
     private void addExpenseSplit(Expense expense, User user, BigDecimal amountOwed) {
         ExpenseSplit split = new ExpenseSplit();
         split.setUser(user);
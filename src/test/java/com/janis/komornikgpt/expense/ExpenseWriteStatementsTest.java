@@ -0,0 +1,159 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.group.GroupRepository;
+import com.janis.komornikgpt.user.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.metamodel.EntityType;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Number of JDBC statements of createExpense: ids come from pooled sequences, so only {@code ceil(splits / 50)}
+ * {@code nextval} calls depend on the number of splits, and all splits go through one prepared insert executed in JDBC
+ * batches. Before, every row cost its own {@code nextval} and insert. Each expense is rolled back. Needs a group
+ * with at least two members, e.g. the test data of the local profile. Run with
+ * {@code mvn test -Dtest=ExpenseWriteStatementsTest -Ddatabase=true -Ddatabase.group-id=1 -Dspring.profiles.active=local}
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@EnabledIfSystemProperty(named = "database", matches = "true")
+class ExpenseWriteStatementsTest {
+
+    // Participants, expense and split inserts, balance upsert, data version bump and the group with its members for
+    // the response
+    private static final long STATEMENTS = 7;
+    private static final int[] SPLITS = {1, 5, 15, 60};
+    private static final int WARM_UP = 5;
+    private static final int ROUNDS = 50;
+
+    @Autowired
+    private ExpenseService expenseService;
+    @Autowired
+    private GroupRepository groupRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transaction;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void testSequenceIncrementsMatchAllocationSizes() {
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            for (Field field : entity.getJavaType().getDeclaredFields()) {
+                SequenceGenerator generator = field.getAnnotation(SequenceGenerator.class);
+                if (generator != null) {
+                    assertEquals(generator.allocationSize(), jdbcTemplate.queryForObject(
+                            "SELECT increment_by FROM pg_sequences WHERE sequencename = ?", Integer.class,
+                            generator.sequenceName()), generator.sequenceName());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCreateExpenseRoundTripsDoNotDependOnSplitCount() {
+        // Given
+        long groupId = Long.getLong("database.group-id", 1L);
+        List<User> members = transaction.execute(status ->
+                List.copyOf(groupRepository.findById(groupId).orElseThrow().getUsers()));
+        assumeTrue(members.size() >= 2, "Grupa " + groupId + " ma mniej niż dwóch członków");
+        Principal principal = members.getFirst()::getUsername;
+
+        for (int splits : SPLITS) {
+            CreateExpenseRequest request = request(groupId, members, splits);
+            for (int i = 0; i < WARM_UP; i++) {
+                create(request, principal, true);
+            }
+
+            // When
+            long sequenceCalls = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                Round round = create(request, principal, true);
+                sequenceCalls += round.sequenceCalls();
+
+                // Then
+                assertEquals(1 + splits, round.inserts());
+                assertEquals(STATEMENTS + round.sequenceCalls(), round.statements(), splits + " podziałów");
+            }
+            Round unbatched = create(request, principal, false);
+
+            // Then: with allocationSize 1 every expense and split took one nextval, without batching one insert each
+            assertTrue(sequenceCalls <= Math.ceilDiv(ROUNDS, 50) + Math.ceilDiv(ROUNDS * splits, 50) + 2,
+                    sequenceCalls + " wywołań sekwencji zamiast " + ROUNDS * (1 + splits));
+            assertEquals(STATEMENTS - 1 + splits + unbatched.sequenceCalls(), unbatched.statements(),
+                    splits + " podziałów bez batchowania");
+        }
+    }
+
+    private Round create(CreateExpenseRequest request, Principal principal, boolean batched) {
+        long sequences = sequenceValues();
+        statistics.clear();
+        transaction.executeWithoutResult(status -> {
+            if (!batched) {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(1);
+            }
+            expenseService.createExpense(request, principal);
+            entityManager.flush();
+            status.setRollbackOnly();
+        });
+        return new Round(statistics.getPrepareStatementCount(), statistics.getEntityInsertCount(),
+                (sequenceValues() - sequences) / 50);
+    }
+
+    // Sequences are not rolled back, every nextval moves them by the allocation size
+    private long sequenceValues() {
+        return jdbcTemplate.queryForObject("""
+                SELECT COALESCE(SUM(last_value), 0) FROM pg_sequences
+                WHERE sequencename IN ('expenses_id_seq', 'expense_splits_id_seq')
+                """, Long.class);
+    }
+
+    /**
+     * The payer is not among the splits, so the balance upsert is never skipped.
+     */
+    private static CreateExpenseRequest request(long groupId, List<User> members, int splits) {
+        List<CreateExpenseRequest.ExpenseSplitRequest> shares = new ArrayList<>();
+        for (int i = 0; i < splits; i++) {
+            shares.add(new CreateExpenseRequest.ExpenseSplitRequest(members.get(1 + i % (members.size() - 1)).getId(),
+                    BigDecimal.ONE));
+        }
+        return new CreateExpenseRequest("Zapis", BigDecimal.valueOf(splits), Currency.PLN, LocalDateTime.now(),
+                members.getFirst().getId(), groupId, shares, ExpenseCategory.NO_CATEGORY_GENERAL);
+    }
+
+    private record Round(long statements, long inserts, long sequenceCalls) {
+    }
+}
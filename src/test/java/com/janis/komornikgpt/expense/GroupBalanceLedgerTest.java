@@ -0,0 +1,82 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.group.GroupRepository;
+import com.janis.komornikgpt.user.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The {@code group_balances} ledger against PostgreSQL: after creating, updating and deleting expenses through
+ * {@link ExpenseService} it must equal the aggregate queries over unpaid expenses, so a rebuild changes nothing.
+ * The expenses are written into an existing group with at least two members and rolled back. Run with
+ * {@code mvn test -Dtest=GroupBalanceLedgerTest -Ddatabase=true -Ddatabase.group-id=1 -Dspring.profiles.active=local}
+ */
+@SpringBootTest
+@Transactional
+@EnabledIfSystemProperty(named = "database", matches = "true")
+class GroupBalanceLedgerTest {
+
+    @Autowired
+    private ExpenseService expenseService;
+    @Autowired
+    private GroupBalanceService groupBalanceService;
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Test
+    void testLedgerMatchesAggregateQueriesAfterWrites() {
+        // Given
+        long groupId = Long.getLong("database.group-id", 1L);
+        List<User> members = groupRepository.findById(groupId).orElseThrow().getUsers();
+        assumeTrue(members.size() >= 2, "Grupa " + groupId + " ma mniej niż dwóch członków");
+        assumeTrue(groupBalanceService.verify(groupId).isEmpty(), "Saldo grupy " + groupId + " już się rozjechało");
+        User payer = members.get(0);
+        User other = members.get(1);
+        Principal principal = payer::getUsername;
+
+        // When
+        ExpenseDto dinner = expenseService.createExpense(new CreateExpenseRequest("Kolacja", new BigDecimal("90.00"),
+                Currency.PLN, LocalDateTime.now(), payer.getId(), groupId, List.of(
+                new CreateExpenseRequest.ExpenseSplitRequest(payer.getId(), new BigDecimal("45.00")),
+                new CreateExpenseRequest.ExpenseSplitRequest(other.getId(), new BigDecimal("45.00"))),
+                ExpenseCategory.NO_CATEGORY_GENERAL), principal);
+        ExpenseDto taxi = expenseService.createExpense(new CreateExpenseRequest("Taksówka", new BigDecimal("30.00"),
+                Currency.PLN, LocalDateTime.now(), payer.getId(), groupId, List.of(
+                new CreateExpenseRequest.ExpenseSplitRequest(other.getId(), new BigDecimal("30.00"))),
+                ExpenseCategory.NO_CATEGORY_GENERAL), principal);
+        expenseService.updateExpense(dinner.id(), new UpdateExpenseRequest(other.getId(), groupId,
+                new BigDecimal("50.00"), Currency.EUR, "Kolacja", LocalDateTime.now(), List.of(
+                new UpdateExpenseRequest.SplitDto(payer.getId(), new BigDecimal("50.00"))),
+                ExpenseCategory.NO_CATEGORY_GENERAL), principal);
+        expenseService.deleteExpense(taxi.id(), principal);
+
+        // Then
+        assertTrue(groupBalanceService.verify(groupId).isEmpty(), () -> groupBalanceService.verify(groupId).toString());
+        List<MemberBalance> after = groupBalanceService.findBalances(groupId);
+        assertTrue(groupBalanceService.rebuild(groupId).isEmpty());
+        assertEquals(nonZero(after), nonZero(groupBalanceService.findBalances(groupId)));
+    }
+
+    private static HashSet<MemberBalance> nonZero(List<MemberBalance> balances) {
+        HashSet<MemberBalance> nonZero = new HashSet<>();
+        balances.stream()
+                .filter(balance -> balance.amount().signum() != 0)
+                .map(balance -> new MemberBalance(balance.userId(), balance.userName(), balance.currency(),
+                        balance.amount().stripTrailingZeros()))
+                .forEach(nonZero::add);
+        return nonZero;
+    }
+}
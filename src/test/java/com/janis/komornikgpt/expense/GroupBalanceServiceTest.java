@@ -0,0 +1,278 @@
+package com.janis.komornikgpt.expense;
+
+import com.janis.komornikgpt.group.Group;
+import com.janis.komornikgpt.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroupBalanceServiceTest {
+
+    private static final Long GROUP_ID = 1L;
+
+    @Mock
+    private GroupBalanceRepository groupBalanceRepository;
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+
+    @InjectMocks
+    private GroupBalanceService groupBalanceService;
+
+    // group_balances rows of the group, keyed by user id and currency
+    private final Map<String, BigDecimal> ledger = new TreeMap<>();
+
+    // Unpaid and paid expenses the aggregate queries run over
+    private final List<Expense> expenses = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(invocation -> {
+            Long[] userIds = invocation.getArgument(2);
+            BigDecimal[] deltas = invocation.getArgument(3);
+            for (int i = 0; i < userIds.length; i++) {
+                ledger.merge(userIds[i] + ":" + invocation.getArgument(1), deltas[i], BigDecimal::add);
+            }
+            return null;
+        }).when(groupBalanceRepository).addToBalances(eq(GROUP_ID), anyString(), any(), any());
+        lenient().doAnswer(invocation -> {
+            ledger.merge(invocation.getArgument(1) + ":" + invocation.getArgument(2), invocation.getArgument(3),
+                    BigDecimal::add);
+            return null;
+        }).when(groupBalanceRepository).addToBalance(eq(GROUP_ID), anyLong(), anyString(), any());
+        lenient().doAnswer(invocation -> {
+            ledger.clear();
+            return null;
+        }).when(groupBalanceRepository).deleteAllByGroupId(GROUP_ID);
+        lenient().when(groupBalanceRepository.findMemberBalancesByGroupId(GROUP_ID)).thenAnswer(invocation ->
+                ledger.entrySet().stream().map(row -> {
+                    String[] key = row.getKey().split(":");
+                    return new MemberBalance(Long.valueOf(key[0]), "Użytkownik " + key[0], Currency.valueOf(key[1]),
+                            row.getValue());
+                }).toList());
+        lenient().when(expenseRepository.sumUnpaidPaidByGroupId(GROUP_ID)).thenAnswer(invocation ->
+                totals(expense -> Map.of(expense.getPayer().getId(), expense.getAmount())));
+        lenient().when(expenseRepository.sumUnpaidOwedByGroupId(GROUP_ID)).thenAnswer(invocation ->
+                totals(GroupBalanceServiceTest::owed));
+    }
+
+    @Test
+    void testCreateAddsPayerAndSplitDeltasInOneStatement() {
+        // Given
+        Expense expense = expense(2L, "90.00", Currency.PLN, 3L, 1L, 2L);
+
+        // When
+        groupBalanceService.addExpense(expense);
+
+        // Then: payer 2 paid 90 and owes 30, rows are sorted by user id
+        verify(groupBalanceRepository).addToBalances(GROUP_ID, "PLN", new Long[]{1L, 2L, 3L},
+                new BigDecimal[]{new BigDecimal("-30.00"), new BigDecimal("60.00"), new BigDecimal("-30.00")});
+        verifyNoMoreInteractions(groupBalanceRepository);
+    }
+
+    @Test
+    void testZeroDeltasAreSkipped() {
+        // Given
+        Expense ownShare = expense(1L, "30.00", Currency.PLN, 1L);
+        Expense sharedWithPayer = expense(1L, "30.00", Currency.EUR, 1L, 2L);
+
+        // When
+        groupBalanceService.addExpense(ownShare);
+        groupBalanceService.addExpense(sharedWithPayer);
+
+        // Then
+        verify(groupBalanceRepository).addToBalances(GROUP_ID, "EUR", new Long[]{1L, 2L},
+                new BigDecimal[]{new BigDecimal("15.00"), new BigDecimal("-15.00")});
+        verifyNoMoreInteractions(groupBalanceRepository);
+    }
+
+    @Test
+    void testPaidExpenseAndExpenseWithoutGroupAreIgnored() {
+        // Given
+        Expense paid = expense(1L, "40.00", Currency.PLN, 2L);
+        paid.setPaid(true);
+        Expense withoutGroup = expense(1L, "40.00", Currency.PLN, 2L);
+        withoutGroup.setGroup(null);
+
+        // When
+        groupBalanceService.addExpense(paid);
+        groupBalanceService.removeExpense(paid);
+        groupBalanceService.addExpense(withoutGroup);
+
+        // Then
+        verifyNoInteractions(groupBalanceRepository);
+    }
+
+    @Test
+    void testDeleteReversesCreate() {
+        // Given
+        Expense expense = expense(1L, "100.00", Currency.PLN, 1L, 2L, 3L, 4L);
+        groupBalanceService.addExpense(expense);
+
+        // When
+        groupBalanceService.removeExpense(expense);
+
+        // Then
+        verify(groupBalanceRepository).addToBalances(GROUP_ID, "PLN", new Long[]{1L, 2L, 3L, 4L},
+                new BigDecimal[]{new BigDecimal("-75.00"), new BigDecimal("25.00"), new BigDecimal("25.00"),
+                        new BigDecimal("25.00")});
+        assertTrue(ledger.values().stream().allMatch(amount -> amount.signum() == 0), ledger.toString());
+    }
+
+    @Test
+    void testUpdateMovingCurrencyAndPayerReversesOldDeltas() {
+        // Given
+        Expense expense = expense(1L, "60.00", Currency.PLN, 1L, 2L, 3L);
+        groupBalanceService.addExpense(expense);
+
+        // When: the order of ExpenseService.updateExpense, the old deltas are reversed before the fields change
+        groupBalanceService.removeExpense(expense);
+        expense.setPayer(user(3L));
+        expense.setCurrency(Currency.EUR);
+        groupBalanceService.addExpense(expense);
+
+        // Then
+        assertEquals(Map.of(
+                "1:PLN", new BigDecimal("0.00"),
+                "2:PLN", new BigDecimal("0.00"),
+                "3:PLN", new BigDecimal("0.00"),
+                "1:EUR", new BigDecimal("-20.00"),
+                "2:EUR", new BigDecimal("-20.00"),
+                "3:EUR", new BigDecimal("40.00")), ledger);
+    }
+
+    @Test
+    void testLedgerMatchesAggregateQueriesAfterWrites() {
+        // Given
+        Expense dinner = create(expense(1L, "90.00", Currency.PLN, 1L, 2L, 3L));
+        Expense taxi = create(expense(2L, "25.50", Currency.EUR, 1L, 2L));
+        Expense tickets = create(expense(3L, "120.00", Currency.PLN, 2L, 3L));
+        create(expense(1L, "300.00", Currency.EUR, 1L, 2L, 3L));
+
+        // When
+        groupBalanceService.removeExpense(dinner);
+        dinner.setPayer(user(2L));
+        dinner.setAmount(new BigDecimal("99.00"));
+        dinner.getSplits().forEach(split -> split.setAmountOwed(new BigDecimal("33.00")));
+        groupBalanceService.addExpense(dinner);
+
+        groupBalanceService.removeExpense(tickets);
+        expenses.remove(tickets);
+
+        groupBalanceService.removeExpense(taxi);
+        taxi.setPaid(true);
+
+        // Then
+        assertTrue(groupBalanceService.verify(GROUP_ID).isEmpty());
+        Map<String, BigDecimal> beforeRebuild = nonZero(ledger);
+        assertTrue(groupBalanceService.rebuild(GROUP_ID).isEmpty());
+        assertEquals(beforeRebuild, ledger);
+        assertEquals(Map.of(
+                "1:PLN", new BigDecimal("-33.00"),
+                "2:PLN", new BigDecimal("66.00"),
+                "3:PLN", new BigDecimal("-33.00"),
+                "1:EUR", new BigDecimal("200.00"),
+                "2:EUR", new BigDecimal("-100.00"),
+                "3:EUR", new BigDecimal("-100.00")), ledger);
+    }
+
+    @Test
+    void testRebuildReportsDriftAndRewritesLedgerFromAggregateQueries() {
+        // Given
+        create(expense(1L, "90.00", Currency.PLN, 1L, 2L, 3L));
+        ledger.put("1:PLN", new BigDecimal("50.00"));
+        ledger.remove("3:PLN");
+        ledger.put("2:EUR", new BigDecimal("10.00"));
+
+        // When
+        List<BalanceDrift> drifts = groupBalanceService.rebuild(GROUP_ID);
+
+        // Then
+        assertEquals(List.of(
+                new BalanceDrift(1L, Currency.PLN, new BigDecimal("50.00"), new BigDecimal("60.00")),
+                new BalanceDrift(2L, Currency.EUR, new BigDecimal("10.00"), BigDecimal.ZERO),
+                new BalanceDrift(3L, Currency.PLN, BigDecimal.ZERO, new BigDecimal("-30.00"))), drifts);
+        assertEquals(Map.of(
+                "1:PLN", new BigDecimal("60.00"),
+                "2:PLN", new BigDecimal("-30.00"),
+                "3:PLN", new BigDecimal("-30.00")), ledger);
+        assertTrue(groupBalanceService.verify(GROUP_ID).isEmpty());
+        verify(groupBalanceRepository).deleteAllByGroupId(GROUP_ID);
+    }
+
+    private Expense create(Expense expense) {
+        expenses.add(expense);
+        groupBalanceService.addExpense(expense);
+        return expense;
+    }
+
+    /**
+     * Sums of unpaid expenses grouped by user and currency, like the {@code GROUP BY} of the aggregate queries.
+     */
+    private List<UserCurrencyTotal> totals(Function<Expense, Map<Long, BigDecimal>> amounts) {
+        Map<String, UserCurrencyTotal> totals = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            if (expense.getPaid()) {
+                continue;
+            }
+            amounts.apply(expense).forEach((userId, amount) -> totals.merge(userId + ":" + expense.getCurrency(),
+                    new UserCurrencyTotal(userId, expense.getCurrency(), amount),
+                    (a, b) -> new UserCurrencyTotal(a.userId(), a.currency(), a.amount().add(b.amount()))));
+        }
+        return new ArrayList<>(totals.values());
+    }
+
+    private static Map<Long, BigDecimal> owed(Expense expense) {
+        Map<Long, BigDecimal> owed = new HashMap<>();
+        expense.getSplits().forEach(split -> owed.merge(split.getUser().getId(), split.getAmountOwed(),
+                BigDecimal::add));
+        return owed;
+    }
+
+    private static Map<String, BigDecimal> nonZero(Map<String, BigDecimal> ledger) {
+        Map<String, BigDecimal> nonZero = new TreeMap<>(ledger);
+        nonZero.values().removeIf(amount -> amount.signum() == 0);
+        return nonZero;
+    }
+
+    /**
+     * Unpaid expense in the group, split equally between the given users.
+     */
+    private static Expense expense(Long payerId, String amount, Currency currency, Long... splitUserIds) {
+        Group group = new Group();
+        group.setId(GROUP_ID);
+        Expense expense = new Expense();
+        expense.setPayer(user(payerId));
+        expense.setAmount(new BigDecimal(amount));
+        expense.setCurrency(currency);
+        expense.setGroup(group);
+        BigDecimal share = expense.getAmount().divide(BigDecimal.valueOf(splitUserIds.length));
+        for (Long userId : splitUserIds) {
+            ExpenseSplit split = new ExpenseSplit();
+            split.setExpense(expense);
+            split.setUser(user(userId));
+            split.setAmountOwed(share.setScale(2));
+            expense.getSplits().add(split);
+        }
+        return expense;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
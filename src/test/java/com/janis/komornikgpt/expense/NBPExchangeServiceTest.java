@@ -0,0 +1,426 @@
+package com.janis.komornikgpt.expense;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NBPExchangeServiceTest {
+
+    @Mock
+    private ExchangeRateRepository exchangeRateRepository;
+
+    private StubNbpServer server;
+    private NBPExchangeService nbpExchangeService;
+    private SimpleMeterRegistry meterRegistry;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubNbpServer();
+        nbpExchangeService = createService(Duration.ofSeconds(5), 3);
+        today = LocalDate.now();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void testRatesFetchesAllMissingCurrenciesInOneRequest() {
+        // Given
+        when(exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), eq(today.minusDays(7)), eq(today))).thenReturn(List.of());
+        server.respond(tablesPath(NbpTable.A, quarterStart(today), today), """
+                [{"table":"A","no":"1","effectiveDate":"%s","rates":[
+                    {"currency":"euro","code":"EUR","mid":4.30},
+                    {"currency":"dolar amerykański","code":"USD","mid":3.90},
+                    {"currency":"frank szwajcarski","code":"CHF","mid":4.50}]},
+                 {"table":"A","no":"2","effectiveDate":"%s","rates":[
+                    {"currency":"euro","code":"EUR","mid":4.25},
+                    {"currency":"dolar amerykański","code":"USD","mid":3.95}]}]
+                """.formatted(today.minusDays(1), today));
+
+        // When
+        DatedRates rates = nbpExchangeService.rates(Map.of(
+                Currency.PLN, Set.of(today), Currency.EUR, Set.of(today), Currency.USD, Set.of(today)));
+
+        // Then
+        assertEquals(List.of(tablesPath(NbpTable.A, quarterStart(today), today)), server.requests());
+        assertEquals(new BigDecimal("4.25"), rates.rate(Currency.EUR, today));
+        assertEquals(new BigDecimal("3.95"), rates.rate(Currency.USD, today));
+        assertEquals(BigDecimal.ONE, rates.rate(Currency.PLN, today));
+        assertEquals(new BigDecimal("42.50"), rates.toPln(BigDecimal.TEN, Currency.EUR, today));
+        assertFalse(rates.stale());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ExchangeRate>> saved = ArgumentCaptor.forClass(List.class);
+        verify(exchangeRateRepository).insertMissing(saved.capture());
+        // Zapisywane są wszystkie kursy z tabel (również CHF), jednym wsadem
+        assertEquals(5, saved.getValue().size());
+    }
+
+    @Test
+    void testRatesUseStoredRatesWithoutCallingNbp() {
+        // Given
+        when(exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(List.of(rate(Currency.EUR, today.minusDays(1), "4.20"), rate(Currency.EUR, today, "4.30")));
+
+        // When
+        BigDecimal converted = nbpExchangeService.convertToPln(new BigDecimal("2.00"), Currency.EUR);
+
+        // Then
+        assertEquals(List.of(), server.requests());
+        assertEquals(new BigDecimal("8.60"), converted);
+        verify(exchangeRateRepository, never()).insertMissing(anyCollection());
+    }
+
+    @Test
+    void testDaysWithoutTableAreRememberedAndSkipped() {
+        // Given
+        LocalDate sunday = LocalDate.of(2025, 5, 4);
+        when(exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), any(LocalDate.class), any(LocalDate.class))).thenReturn(List.of());
+        // Ostatnia tabela przed niedzielą jest z piątku
+        server.respond(tablesPath(NbpTable.A, LocalDate.of(2025, 4, 1), LocalDate.of(2025, 6, 30)), """
+                [{"table":"A","no":"84","effectiveDate":"2025-05-02","rates":[{"currency":"euro","code":"EUR","mid":4.30}]}]
+                """);
+
+        // When
+        BigDecimal first = nbpExchangeService.convertToPln(BigDecimal.ONE, Currency.EUR, sunday);
+        BigDecimal second = nbpExchangeService.convertToPln(BigDecimal.ONE, Currency.EUR, sunday);
+
+        // Then
+        assertEquals(1, server.requests().size());
+        assertEquals(new BigDecimal("4.30"), first);
+        assertEquals(new BigDecimal("4.30"), second);
+        verify(exchangeRateRepository, times(1)).findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), any(LocalDate.class), any(LocalDate.class));
+        assertEquals(1, meterRegistry.counter("exchange.rate.upstream.calls").count());
+        assertEquals(0, meterRegistry.counter("exchange.rate.cache.requests", "result", "hit").count());
+        assertEquals(2, meterRegistry.counter("exchange.rate.cache.requests", "result", "no-table").count());
+    }
+
+    @Test
+    void testConcurrentLookupsShareOneUpstreamCall() throws Exception {
+        // Given
+        LocalDate date = LocalDate.of(2025, 5, 6);
+        when(exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), any(LocalDate.class), any(LocalDate.class))).thenReturn(List.of());
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        server.respond(tablesPath(NbpTable.A, LocalDate.of(2025, 4, 1), LocalDate.of(2025, 6, 30)), exchange -> {
+            inFlight.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return """
+                    [{"table":"A","no":"86","effectiveDate":"2025-05-06","rates":[{"currency":"euro","code":"EUR","mid":4.27}]}]
+                    """;
+        });
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<BigDecimal> first = executor.submit(() -> nbpExchangeService.convertToPln(BigDecimal.ONE, Currency.EUR, date));
+            assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+            Future<BigDecimal> second = executor.submit(() -> nbpExchangeService.convertToPln(BigDecimal.ONE, Currency.EUR, date));
+            Thread.sleep(200);
+            release.countDown();
+
+            // Then
+            assertEquals(new BigDecimal("4.27"), first.get(5, TimeUnit.SECONDS));
+            assertEquals(new BigDecimal("4.27"), second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, server.requests().size());
+        assertEquals(1, meterRegistry.counter("exchange.rate.upstream.calls").count());
+        verify(exchangeRateRepository, times(1)).insertMissing(anyCollection());
+    }
+
+    @Test
+    void testHistoricalDatesUseLatestPublicationOnOrBefore() {
+        // Given
+        LocalDate saturday = LocalDate.of(2025, 3, 1);
+        LocalDate monday = LocalDate.of(2025, 3, 3);
+        LocalDate june = LocalDate.of(2025, 6, 10);
+        when(exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), eq(LocalDate.of(2025, 2, 22)), eq(june))).thenReturn(List.of());
+        // Daty z jednego kwartału są pobierane jednym zapytaniem o zakres tabel
+        server.respond(tablesPath(NbpTable.A, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 31)), """
+                [{"table":"A","no":"41","effectiveDate":"2025-02-28","rates":[{"currency":"euro","code":"EUR","mid":4.17}]},
+                 {"table":"A","no":"42","effectiveDate":"2025-03-03","rates":[{"currency":"euro","code":"EUR","mid":4.16}]}]
+                """);
+        server.respond(tablesPath(NbpTable.A, LocalDate.of(2025, 4, 1), LocalDate.of(2025, 6, 30)), """
+                [{"table":"A","no":"110","effectiveDate":"2025-06-09","rates":[{"currency":"euro","code":"EUR","mid":4.27}]}]
+                """);
+
+        // When
+        DatedRates rates = nbpExchangeService.rates(Map.of(Currency.EUR, List.of(saturday, monday, june)));
+        BigDecimal sunday = nbpExchangeService.convertToPln(BigDecimal.ONE, Currency.EUR, LocalDate.of(2025, 3, 2));
+
+        // Then
+        assertEquals(2, server.requests().size());
+        assertEquals(new BigDecimal("4.17"), rates.rate(Currency.EUR, saturday));
+        assertEquals(new BigDecimal("4.16"), rates.rate(Currency.EUR, monday));
+        assertEquals(new BigDecimal("4.27"), rates.rate(Currency.EUR, june));
+        assertEquals(new BigDecimal("4.17"), sunday.stripTrailingZeros());
+        assertEquals(2, meterRegistry.counter("exchange.rate.upstream.calls").count());
+    }
+
+    @Test
+    void testTableBCurrenciesUseWeeklyTable() {
+        // Given
+        LocalDate friday = LocalDate.of(2025, 5, 9);
+        LocalDate tuesday = LocalDate.of(2025, 5, 13);
+        when(exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), eq(friday.minusDays(14)), eq(friday))).thenReturn(List.of());
+        server.respond(tablesPath(NbpTable.A, LocalDate.of(2025, 4, 1), LocalDate.of(2025, 6, 30)), """
+                [{"table":"A","no":"88","effectiveDate":"2025-05-09","rates":[{"currency":"euro","code":"EUR","mid":4.26}]}]
+                """);
+        // Tabela B jest publikowana w środy
+        server.respond(tablesPath(NbpTable.B, LocalDate.of(2025, 4, 1), LocalDate.of(2025, 6, 30)), """
+                [{"table":"B","no":"18","effectiveDate":"2025-05-07","rates":[{"currency":"dong (Wietnam)","code":"VND","mid":0.00014506}]},
+                 {"table":"B","no":"19","effectiveDate":"2025-05-14","rates":[{"currency":"dong (Wietnam)","code":"VND","mid":0.00014470}]}]
+                """);
+
+        // When
+        DatedRates rates = nbpExchangeService.rates(Map.of(Currency.EUR, List.of(friday), Currency.VND, List.of(friday)));
+        BigDecimal nextWeek = nbpExchangeService.convertToPln(new BigDecimal("100000"), Currency.VND, tuesday);
+
+        // Then
+        assertEquals(List.of(tablesPath(NbpTable.A, LocalDate.of(2025, 4, 1), LocalDate.of(2025, 6, 30)),
+                tablesPath(NbpTable.B, LocalDate.of(2025, 4, 1), LocalDate.of(2025, 6, 30))), server.requests());
+        assertEquals(new BigDecimal("4.26"), rates.rate(Currency.EUR, friday));
+        assertEquals(new BigDecimal("0.00014506"), rates.rate(Currency.VND, friday));
+        // Do kolejnej środy obowiązuje tabela z 7 maja
+        assertEquals(new BigDecimal("14.51"), nextWeek);
+        assertEquals(2, meterRegistry.counter("exchange.rate.cache.requests", "result", "no-table").count());
+    }
+
+    @Test
+    void testSlowNbpTimesOutAndFallsBackToStoredRate() {
+        // Given
+        nbpExchangeService = createService(Duration.ofMillis(300), 3);
+        LocalDate date = LocalDate.of(2025, 5, 6);
+        when(exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), any(LocalDate.class), any(LocalDate.class))).thenReturn(List.of());
+        when(exchangeRateRepository.findFirstByCurrencyFromAndCurrencyToAndDateLessThanEqualOrderByDateDesc(
+                Currency.EUR, Currency.PLN, date)).thenReturn(Optional.of(rate(Currency.EUR, LocalDate.of(2025, 3, 31), "4.19")));
+        server.respond(tablesPath(NbpTable.A, LocalDate.of(2025, 4, 1), LocalDate.of(2025, 6, 30)), exchange -> {
+            Thread.sleep(3000);
+            return "[]";
+        });
+
+        // When
+        long start = System.nanoTime();
+        DatedRates rates = nbpExchangeService.rates(Map.of(Currency.EUR, List.of(date)));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Then
+        assertTrue(rates.stale());
+        assertEquals(new BigDecimal("4.19"), rates.rate(Currency.EUR, date));
+        assertTrue(elapsed.compareTo(Duration.ofSeconds(2)) < 0, "Oczekiwanie na NBP trwało " + elapsed);
+        assertEquals(1, meterRegistry.counter("exchange.rate.provider.failures", "provider", "nbp").count());
+    }
+
+    @Test
+    void testCircuitOpensAfterRepeatedFailures() {
+        // Given
+        nbpExchangeService = createService(Duration.ofSeconds(5), 2);
+        when(exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), any(LocalDate.class), any(LocalDate.class))).thenReturn(List.of());
+        when(exchangeRateRepository.findFirstByCurrencyFromAndCurrencyToAndDateLessThanEqualOrderByDateDesc(
+                eq(Currency.EUR), eq(Currency.PLN), any(LocalDate.class)))
+                .thenReturn(Optional.of(rate(Currency.EUR, LocalDate.of(2024, 12, 31), "4.27")));
+        server.failWith(503);
+
+        // When
+        List<DatedRates> results = new ArrayList<>();
+        for (int month = 1; month <= 12; month += 3) {
+            results.add(nbpExchangeService.rates(Map.of(Currency.EUR, List.of(LocalDate.of(2025, month, 15)))));
+        }
+
+        // Then
+        assertTrue(results.stream().allMatch(DatedRates::stale));
+        // Po dwóch błędach obwód jest otwarty i kolejne zapytania nie trafiają do NBP
+        assertEquals(2, server.requests().size());
+        assertEquals(1, meterRegistry.get("exchange.rate.provider.circuit.open").tag("provider", "nbp").gauge().value());
+    }
+
+    @Test
+    void testFileProviderServesRatesWhenNbpIsDown(@TempDir Path dir) throws IOException {
+        // Given
+        Path snapshot = Files.writeString(dir.resolve("rates.csv"), """
+                currency,date,rate
+                EUR,2025-05-05,4.2710
+                EUR,2025-05-06,4.2650
+                USD,2025-05-06,3.7712
+                """);
+        nbpExchangeService = createService(Duration.ofSeconds(5), 3, new FileExchangeRateProvider(snapshot));
+        when(exchangeRateRepository.findAllByCurrencyToAndCurrencyFromInAndDateBetween(
+                eq(Currency.PLN), anyCollection(), any(LocalDate.class), any(LocalDate.class))).thenReturn(List.of());
+        server.failWith(500);
+
+        // When
+        DatedRates rates = nbpExchangeService.rates(Map.of(Currency.EUR, List.of(LocalDate.of(2025, 5, 6)),
+                Currency.USD, List.of(LocalDate.of(2025, 5, 6))));
+
+        // Then
+        assertFalse(rates.stale());
+        assertEquals(new BigDecimal("4.265"), rates.rate(Currency.EUR, LocalDate.of(2025, 5, 6)));
+        assertEquals(new BigDecimal("3.7712"), rates.rate(Currency.USD, LocalDate.of(2025, 5, 6)));
+        assertEquals(1, server.requests().size());
+    }
+
+    @Test
+    void testBackfillSplitsLongPeriodsIntoTableRanges() {
+        // Given
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        server.respond(tablesPath(NbpTable.A, start, LocalDate.of(2024, 4, 2)), """
+                [{"table":"A","no":"1","effectiveDate":"2024-01-02","rates":[{"currency":"euro","code":"EUR","mid":4.35}]}]
+                """);
+        server.respond(tablesPath(NbpTable.A, LocalDate.of(2024, 4, 3), LocalDate.of(2024, 4, 3)), """
+                [{"table":"A","no":"2","effectiveDate":"2024-04-03","rates":[{"currency":"euro","code":"EUR","mid":4.30},
+                                                                            {"currency":"bat","code":"XXX","mid":1.00}]}]
+                """);
+        server.respond(tablesPath(NbpTable.B, start, LocalDate.of(2024, 4, 2)), """
+                [{"table":"B","no":"1","effectiveDate":"2024-01-03","rates":[{"currency":"dong (Wietnam)","code":"VND","mid":0.00016}]}]
+                """);
+        when(exchangeRateRepository.insertMissing(anyCollection()))
+                .thenAnswer(invocation -> invocation.<List<ExchangeRate>>getArgument(0).size());
+
+        // When
+        int inserted = nbpExchangeService.backfill(start, LocalDate.of(2024, 4, 3));
+
+        // Then
+        assertEquals(List.of(tablesPath(NbpTable.A, start, LocalDate.of(2024, 4, 2)),
+                tablesPath(NbpTable.A, LocalDate.of(2024, 4, 3), LocalDate.of(2024, 4, 3)),
+                tablesPath(NbpTable.B, start, LocalDate.of(2024, 4, 2)),
+                tablesPath(NbpTable.B, LocalDate.of(2024, 4, 3), LocalDate.of(2024, 4, 3))), server.requests());
+        assertEquals(3, inserted);
+    }
+
+    private NBPExchangeService createService(Duration timeout, int failureThreshold, ExchangeRateProvider... fallbacks) {
+        meterRegistry = new SimpleMeterRegistry();
+        List<ExchangeRateProvider> providers = new ArrayList<>();
+        providers.add(new NbpExchangeRateProvider(RestClient.builder(), server.baseUrl(),
+                Duration.ofSeconds(1), Duration.ofSeconds(10)));
+        providers.addAll(List.of(fallbacks));
+        ResilientExchangeRateProvider provider = new ResilientExchangeRateProvider(providers, meterRegistry,
+                timeout, failureThreshold, Duration.ofMinutes(1));
+        ExchangeRateCache rateCache = new ExchangeRateCache(meterRegistry, Duration.ofMinutes(5));
+        return new NBPExchangeService(exchangeRateRepository, provider, rateCache, 400);
+    }
+
+    private static String tablesPath(NbpTable table, LocalDate from, LocalDate to) {
+        return from.equals(to)
+                ? "/api/exchangerates/tables/" + table.code() + "/" + from + "/?format=json"
+                : "/api/exchangerates/tables/" + table.code() + "/" + from + "/" + to + "/?format=json";
+    }
+
+    private static LocalDate quarterStart(LocalDate date) {
+        return LocalDate.of(date.getYear(), (date.getMonthValue() - 1) / 3 * 3 + 1, 1);
+    }
+
+    private ExchangeRate rate(Currency currency, LocalDate date, String value) {
+        return ExchangeRate.of(currency, date, new BigDecimal(value));
+    }
+
+    /**
+     * Local stand-in for api.nbp.pl. Unknown paths get 404, like days without a table.
+     */
+    private static final class StubNbpServer {
+
+        private final HttpServer httpServer;
+        private final Map<String, Responder> responses = new ConcurrentHashMap<>();
+        private final List<String> requests = new CopyOnWriteArrayList<>();
+        private volatile int failureStatus;
+
+        private StubNbpServer() throws IOException {
+            httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            httpServer.setExecutor(Executors.newCachedThreadPool());
+            httpServer.createContext("/", this::handle);
+            httpServer.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + httpServer.getAddress().getPort();
+        }
+
+        void respond(String path, String body) {
+            responses.put(path, exchange -> body);
+        }
+
+        void respond(String path, Responder responder) {
+            responses.put(path, responder);
+        }
+
+        void failWith(int status) {
+            failureStatus = status;
+        }
+
+        List<String> requests() {
+            return List.copyOf(requests);
+        }
+
+        void stop() {
+            httpServer.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().toString();
+            requests.add(path);
+            try (exchange) {
+                Responder responder = responses.get(path);
+                if (failureStatus != 0 || responder == null) {
+                    exchange.sendResponseHeaders(failureStatus != 0 ? failureStatus : 404, -1);
+                    return;
+                }
+                byte[] body = responder.respond(exchange).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @FunctionalInterface
+        interface Responder {
+            String respond(HttpExchange exchange) throws InterruptedException;
+        }
+    }
+}
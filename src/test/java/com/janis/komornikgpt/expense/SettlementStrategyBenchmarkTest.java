@@ -0,0 +1,69 @@
+package com.janis.komornikgpt.expense;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Porównanie liczby przelewów i czasu dla strategii greedy i exact.
+ * Uruchomienie: {@code mvn test -Dtest=SettlementStrategyBenchmarkTest -Dbenchmark=true}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SettlementStrategyBenchmarkTest {
+
+    private static final int[] GROUP_SIZES = {5, 10, 15, 20, 30, 50, 100, 200};
+    private static final int ROUNDS = 20;
+
+    @Test
+    void compareStrategies() {
+        SettlementStrategy greedy = new GreedySettlementStrategy();
+        SettlementStrategy exact = new ExactSettlementStrategy(Duration.ofMillis(50), 20);
+        Random random = new Random(7);
+
+        System.out.printf("%8s %16s %14s %16s %14s %10s%n",
+                "members", "greedy transfers", "greedy us", "exact transfers", "exact us", "fallbacks");
+        for (int size : GROUP_SIZES) {
+            long greedyTransfers = 0, greedyNanos = 0, exactTransfers = 0, exactNanos = 0;
+            int fallbacks = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long[] balances = randomBalances(size, random);
+
+                long start = System.nanoTime();
+                greedyTransfers += greedy.settle(balances).size();
+                greedyNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                TransferPlan result = exact.settle(balances);
+                exactNanos += System.nanoTime() - start;
+                exactTransfers += result.size();
+                if (result.algorithm() == SettlementAlgorithm.GREEDY) {
+                    fallbacks++;
+                }
+            }
+            System.out.printf("%8d %16.1f %14d %16.1f %14d %10d%n", size,
+                    (double) greedyTransfers / ROUNDS, greedyNanos / ROUNDS / 1000,
+                    (double) exactTransfers / ROUNDS, exactNanos / ROUNDS / 1000, fallbacks);
+        }
+    }
+
+    /**
+     * Members are split into small zero-sum circles (2-5 people), like in real groups where sub-groups settle
+     * among themselves.
+     */
+    private long[] randomBalances(int size, Random random) {
+        long[] balances = new long[size];
+        int index = 0;
+        while (index < size) {
+            int circle = Math.min(size - index, 2 + random.nextInt(4));
+            long total = 0;
+            for (int i = 0; i < circle; i++) {
+                long cents = i == circle - 1 ? -total : random.nextInt(200_000) - 100_000;
+                total += cents;
+                balances[index++] = cents;
+            }
+        }
+        return balances;
+    }
+}
@@ -0,0 +1,104 @@
+package com.janis.komornikgpt.group;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GroupETagsTest {
+
+    @Mock
+    private GroupRepository groupRepository;
+
+    @InjectMocks
+    private GroupETags groupETags;
+
+    @Test
+    void testSameVersionIsNotModified() {
+        // Given
+        when(groupRepository.findDataVersion(1L)).thenReturn(7L);
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        assertFalse(groupETags.checkNotModified(1L, new ServletWebRequest(request(null), first)));
+        String eTag = first.getHeader(HttpHeaders.ETAG);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        // When
+        boolean notModified = groupETags.checkNotModified(1L, new ServletWebRequest(request(eTag), second));
+
+        // Then
+        assertTrue(eTag.startsWith("W/\"g1-v7-"));
+        assertEquals("private, no-cache", first.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertTrue(notModified);
+        assertEquals(304, second.getStatus());
+    }
+
+    @Test
+    void testBumpedVersionIsModified() {
+        // Given
+        when(groupRepository.findDataVersion(1L)).thenReturn(7L, 8L);
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        groupETags.checkNotModified(1L, new ServletWebRequest(request(null), first));
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        // When
+        boolean notModified = groupETags.checkNotModified(1L,
+                new ServletWebRequest(request(first.getHeader(HttpHeaders.ETAG)), second));
+
+        // Then
+        assertFalse(notModified);
+        assertEquals(200, second.getStatus());
+        assertTrue(second.getHeader(HttpHeaders.ETAG).startsWith("W/\"g1-v8-"));
+    }
+
+    @Test
+    void testRepresentationIsPartOfTheTag() {
+        MockHttpServletRequest full = request(null);
+        MockHttpServletRequest compact = request(null);
+        compact.setQueryString("format=compact");
+
+        assertNotEquals(GroupETags.eTag(1L, 7L, null, new ServletWebRequest(full)),
+                GroupETags.eTag(1L, 7L, null, new ServletWebRequest(compact)));
+    }
+
+    @Test
+    void testVariantIsPartOfTheTag() {
+        // Given
+        MockHttpServletResponse yesterday = new MockHttpServletResponse();
+        groupETags.checkNotModified(1L, 7L, "2026-10-16", new ServletWebRequest(request(null), yesterday));
+        MockHttpServletResponse today = new MockHttpServletResponse();
+
+        // When
+        boolean notModified = groupETags.checkNotModified(1L, 7L, "2026-10-17",
+                new ServletWebRequest(request(yesterday.getHeader(HttpHeaders.ETAG)), today));
+
+        // Then
+        assertFalse(notModified);
+        assertTrue(today.getHeader(HttpHeaders.ETAG).startsWith("W/\"g1-v7-2026-10-17-"));
+    }
+
+    @Test
+    void testMissingGroupHasNoTag() {
+        when(groupRepository.findDataVersion(1L)).thenReturn(null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(groupETags.checkNotModified(1L, new ServletWebRequest(request(null), response)));
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    private static MockHttpServletRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/expenses/group/1");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,108 @@
+package com.janis.komornikgpt.group;
+
+import com.janis.komornikgpt.exception.GroupNotFoundException;
+import com.janis.komornikgpt.user.User;
+import com.janis.komornikgpt.user.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroupRestControllerTest {
+
+    @Mock
+    private GroupService groupService;
+    @Mock
+    private UserService userService;
+    @Mock
+    private GroupRepository groupRepository;
+
+    private GroupRestController controller;
+    private User member;
+    private Principal principal;
+
+    @BeforeEach
+    void setUp() {
+        controller = new GroupRestController(groupService, userService, new GroupETags(groupRepository));
+        member = User.builder().id(2L).username("anna").name("Anna").surname("Nowak").build();
+        principal = new UsernamePasswordAuthenticationToken(member, null, List.of());
+    }
+
+    @Test
+    void testRevalidationDoesNotLoadGroup() {
+        // Given
+        when(groupService.canView(1L, 2L, null)).thenReturn(true);
+        when(groupRepository.findDataVersion(1L)).thenReturn(7L);
+        when(groupService.findById(1L)).thenReturn(group());
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        controller.getGroupById(1L, null, null, principal, new ServletWebRequest(request(null), first));
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        // When
+        GroupDto response = controller.getGroupById(1L, null, null, principal,
+                new ServletWebRequest(request(first.getHeader(HttpHeaders.ETAG)), second));
+
+        // Then
+        assertNull(response);
+        assertEquals(304, second.getStatus());
+        verify(groupService, times(1)).findById(1L);
+    }
+
+    @Test
+    void testPublicGroupWithViewToken() {
+        // Given
+        when(groupService.canView(1L, null, "token")).thenReturn(true);
+        when(groupRepository.findDataVersion(1L)).thenReturn(7L);
+        when(groupService.findById(1L)).thenReturn(group());
+
+        // When
+        GroupDto response = controller.getGroupById(1L, "token", null, null,
+                new ServletWebRequest(request(null), new MockHttpServletResponse()));
+
+        // Then
+        assertEquals(1L, response.id());
+    }
+
+    @Test
+    void testNoAccessIsCheckedBeforeVersionAndGroup() {
+        // Given
+        when(groupService.canView(1L, 2L, "zly")).thenReturn(false);
+
+        // When / Then
+        assertThrows(GroupNotFoundException.class, () -> controller.getGroupById(1L, "zly", null, principal,
+                new ServletWebRequest(request(null), new MockHttpServletResponse())));
+        verify(groupService, never()).findById(1L);
+        verifyNoInteractions(groupRepository);
+    }
+
+    private Group group() {
+        Group group = new Group();
+        group.setId(1L);
+        group.setName("Wyjazd");
+        group.setUsers(new ArrayList<>(List.of(member)));
+        group.setCreatedBy(member);
+        return group;
+    }
+
+    private static MockHttpServletRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/groups/1");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return request;
+    }
+}
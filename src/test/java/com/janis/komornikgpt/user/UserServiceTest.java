@@ -0,0 +1,107 @@
+package com.janis.komornikgpt.user;
+
+import com.janis.komornikgpt.group.GroupRepository;
+import com.janis.komornikgpt.mail.EmailService;
+import com.janis.komornikgpt.mail.VerificationTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PasswordEncoder passwordEncoder;
+    @Mock
+    private VerificationTokenRepository verificationTokenRepository;
+    @Mock
+    private EmailService emailService;
+    @Mock
+    private GroupRepository groupRepository;
+
+    @InjectMocks
+    private UserService userService;
+
+    @Test
+    void testDeleteUserBumpsGroupsBeforeMembershipsAreGone() {
+        // Given
+        when(userRepository.existsById(1L)).thenReturn(true);
+
+        // When
+        userService.deleteUser(1L);
+
+        // Then
+        InOrder inOrder = inOrder(groupRepository, userRepository);
+        inOrder.verify(groupRepository).bumpDataVersionOfMemberGroups(1L);
+        inOrder.verify(userRepository).deleteById(1L);
+    }
+
+    @Test
+    void testRenameBumpsGroups() {
+        // Given
+        User user = user();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+
+        // When
+        userService.updateUser(1L, new UpdateUserRequest("Janina", "Kowalska", "jan@example.com", null, null));
+
+        // Then
+        verify(groupRepository).bumpDataVersionOfMemberGroups(1L);
+        assertEquals("Janina", user.getName());
+    }
+
+    @Test
+    void testEmailChangeByUsernameBumpsGroups() {
+        // Given
+        User user = user();
+        when(userRepository.findByUsername("jan")).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+
+        // When
+        userService.updateUser("jan", new UpdateUserRequest("Jan", "Kowalski", "nowy@example.com", null, null));
+
+        // Then
+        verify(groupRepository).bumpDataVersionOfMemberGroups(1L);
+    }
+
+    @Test
+    void testPasswordChangeKeepsGroupVersions() {
+        // Given
+        User user = user();
+        when(userRepository.findByUsername("jan")).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+        when(passwordEncoder.matches("stare", "hash")).thenReturn(true);
+        when(passwordEncoder.encode("nowe")).thenReturn("nowy-hash");
+
+        // When
+        userService.updateUser("jan", new UpdateUserRequest("Jan", "Kowalski", "jan@example.com", "stare", "nowe"));
+
+        // Then
+        verify(groupRepository, never()).bumpDataVersionOfMemberGroups(anyLong());
+        assertEquals("nowy-hash", user.getPassword());
+    }
+
+    private static User user() {
+        return User.builder()
+                .id(1L)
+                .username("jan")
+                .email("jan@example.com")
+                .password("hash")
+                .name("Jan")
+                .surname("Kowalski")
+                .build();
+    }
+}